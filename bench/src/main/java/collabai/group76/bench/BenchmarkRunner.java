@@ -0,0 +1,23 @@
+package collabai.group76.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all benchmarks with the GC profiler attached, so allocation rates are reported next to throughput and average
+ * latency. Accepts the usual JMH command line options, e.g. -p bids=1000,10000 to run only the smaller domains.
+ */
+public class BenchmarkRunner {
+
+  public static void main(String[] args) throws Exception {
+    Options options = new OptionsBuilder()
+          .parent(new CommandLineOptions(args))
+          .include(BenchmarkRunner.class.getPackage().getName() + ".*Benchmark")
+          .addProfiler(GCProfiler.class)
+          .build();
+    new Runner(options).run();
+  }
+}
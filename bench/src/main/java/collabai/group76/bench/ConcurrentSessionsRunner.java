@@ -0,0 +1,111 @@
+package collabai.group76.bench;
+
+import geniusweb.actions.PartyId;
+import geniusweb.inform.Parameters;
+import geniusweb.profile.utilityspace.LinearAdditiveUtilitySpace;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks that parties negotiating in parallel in one JVM do not share state. A list of seeded simulator sessions is
+ * first run on a single thread, then every thread runs the whole list at the same time, and each thread must reach
+ * the same outcome as the single thread for every session. The turn and model budgets are set far beyond what a
+ * session needs, so a contended clock cannot cut a search short and change the outcome.
+ * Usage: ConcurrentSessionsRunner [threads [sessions [rounds]]], 8 threads of 50 sessions of 200 rounds by default.
+ */
+public class ConcurrentSessionsRunner {
+
+  //Issues and values per issue of the domains played on.
+  private static final int[][] DOMAINS = {{3, 5}, {4, 8}, {5, 10}};
+  private static final double[] CONCESSIONS = {0.2, 1.0, 2.0};
+  private static final int BUDGET_MS = 60000;
+
+  public static void main(String[] args) throws Exception {
+    int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+    int sessions = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+    int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+    SaopSimulator simulator = new SaopSimulator(Files.createTempDirectory("group76-sim"));
+    LinearAdditiveUtilitySpace[] ours = new LinearAdditiveUtilitySpace[DOMAINS.length];
+    ScriptedOpponent[] opponents = new ScriptedOpponent[DOMAINS.length];
+    for (int d = 0; d < DOMAINS.length; d++) {
+      String domain = "par" + DOMAINS[d][0] + "x" + DOMAINS[d][1];
+      ours[d] = SyntheticDomains.profile(domain, domain + "-a", DOMAINS[d][0], DOMAINS[d][1], 76 + d);
+      opponents[d] = new ScriptedOpponent(new PartyId("opponent"),
+            SyntheticDomains.profile(domain, domain + "-b", DOMAINS[d][0], DOMAINS[d][1], 1076 + d), 0.5,
+            CONCESSIONS[d % CONCESSIONS.length]);
+    }
+    Session[] list = new Session[sessions];
+    for (int i = 0; i < sessions; i++) {
+      int d = i % DOMAINS.length;
+      list[i] = new Session(ours[d], opponents[d], new Parameters().with("logLevel", "WARNING")
+            .with("seed", (long) i).with("turnBudgetMs", BUDGET_MS).with("modelBudgetMs", BUDGET_MS));
+    }
+    List<SessionResult> expected = runAll(simulator, list, rounds);
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<List<SessionResult>>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      futures.add(executor.submit(() -> {
+        start.await();
+        return runAll(simulator, list, rounds);
+      }));
+    }
+    long begin = System.nanoTime();
+    start.countDown();
+    int mismatches = 0;
+    for (int t = 0; t < threads; t++) {
+      List<SessionResult> actual = futures.get(t).get();
+      for (int i = 0; i < sessions; i++) {
+        if (!sameOutcome(expected.get(i), actual.get(i))) {
+          mismatches++;
+          System.out.printf(Locale.ROOT, "Thread %d session %d differs: %s instead of %s%n", t, i,
+                outcome(actual.get(i)), outcome(expected.get(i)));
+        }
+      }
+    }
+    executor.shutdown();
+    System.out.printf(Locale.ROOT, "%d threads ran %d sessions each in %.1f s, %d outcomes differ%n", threads,
+          sessions, (System.nanoTime() - begin) / 1e9, mismatches);
+    if (mismatches > 0) {
+      System.exit(1);
+    }
+  }
+
+  private static List<SessionResult> runAll(SaopSimulator simulator, Session[] sessions, int rounds)
+        throws Exception {
+    List<SessionResult> results = new ArrayList<>();
+    for (Session session : sessions) {
+      results.add(simulator.run(session.profile, session.opponent, rounds, session.parameters));
+    }
+    return results;
+  }
+
+  private static boolean sameOutcome(SessionResult a, SessionResult b) {
+    return a.isAgreement() == b.isAgreement() && a.getRounds() == b.getRounds() && a.getUtility() == b.getUtility()
+          && a.getOpponentUtility() == b.getOpponentUtility();
+  }
+
+  private static String outcome(SessionResult result) {
+    return String.format(Locale.ROOT, "%s after %d rounds at %.4f/%.4f", result.isAgreement() ? "agreement"
+          : "no agreement", result.getRounds(), result.getUtility(), result.getOpponentUtility());
+  }
+
+  private static class Session {
+    final LinearAdditiveUtilitySpace profile;
+    final ScriptedOpponent opponent;
+    final Parameters parameters;
+
+    Session(LinearAdditiveUtilitySpace profile, ScriptedOpponent opponent, Parameters parameters) {
+      this.profile = profile;
+      this.opponent = opponent;
+      this.parameters = parameters;
+    }
+  }
+}
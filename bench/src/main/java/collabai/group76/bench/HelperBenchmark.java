@@ -0,0 +1,107 @@
+package collabai.group76.bench;
+
+import collabai.group76.util.BidCodec;
+import geniusweb.actions.Action;
+import geniusweb.actions.Offer;
+import geniusweb.actions.PartyId;
+import geniusweb.inform.Parameters;
+import geniusweb.inform.YourTurn;
+import geniusweb.issuevalue.Bid;
+import geniusweb.profile.utilityspace.LinearAdditiveUtilitySpace;
+import geniusweb.progress.ProgressRounds;
+import java.io.IOException;
+import java.util.Date;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-turn hot paths of Group76OHelper on synthetic domains of 10 values per issue. Each iteration starts a fresh
+ * session past halftime, with a history of opponent offers, so the full AC_Combi acceptance path is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HelperBenchmark {
+
+  private static final PartyId OPPONENT = new PartyId("opponent");
+  private static final int OFFERS = 1024;
+  private static final int HISTORY = 100;
+  //Rounds of a session, we start halfway so every turn is past halftime.
+  private static final int ROUNDS = 200000000;
+
+  //Number of bids in the domain.
+  @Param({"1000", "10000", "100000", "1000000", "10000000"})
+  public int bids;
+
+  private LinearAdditiveUtilitySpace profile;
+  private Offer[] opponentOffers;
+  private int nextOffer;
+  private LocalConnection connection;
+  private LocalOHelper helper;
+
+  @Setup(Level.Trial)
+  public void setUpDomain() {
+    profile = SyntheticDomains.profile("bench" + bids, (int) Math.round(Math.log10(bids)), 10, 76);
+    BidCodec codec = new BidCodec(profile.getDomain());
+    SplittableRandom random = new SplittableRandom(76);
+    opponentOffers = new Offer[OFFERS];
+    for (int i = 0; i < OFFERS; i++) {
+      opponentOffers[i] = new Offer(OPPONENT, codec.decode(random.nextLong(codec.size())));
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void setUpSession() throws Exception {
+    connection = new LocalConnection();
+    helper = new LocalOHelper(profile);
+    //No wall clock deadline, so every turn gets its full time budget.
+    ProgressRounds progress = new ProgressRounds(ROUNDS, ROUNDS / 2, new Date(Long.MAX_VALUE));
+    helper.init(SyntheticDomains.settings("group76", "SAOP", progress, new Parameters()), new NullReporter(),
+          connection);
+    for (int i = 0; i < HISTORY; i++) {
+      helper.setLastBid(nextOffer());
+    }
+  }
+
+  @Benchmark
+  public Action myTurn() throws IOException {
+    Action ours = connection.getLastAction();
+    if (ours instanceof Offer) {
+      //The protocol echoes our own offer before the opponent's.
+      helper.setLastBid(ours);
+    }
+    helper.setLastBid(nextOffer());
+    helper.myTurn();
+    helper.advanceProgress(new YourTurn());
+    return connection.getLastAction();
+  }
+
+  @Benchmark
+  public boolean isAcceptable() {
+    return helper.isAcceptable(nextOffer().getBid());
+  }
+
+  @Benchmark
+  public Bid createBid() {
+    return helper.createBid();
+  }
+
+  private Offer nextOffer() {
+    return opponentOffers[nextOffer++ & (OFFERS - 1)];
+  }
+}
@@ -0,0 +1,56 @@
+package collabai.group76.bench;
+
+import geniusweb.inform.Parameters;
+import geniusweb.profile.utilityspace.LinearAdditiveUtilitySpace;
+import geniusweb.progress.ProgressRounds;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Session setup of Group76OHelper, which covers resetDefaults: indexing, scoring and sorting the bid space. Domains
+ * above the materialize limit measure the setup of the streaming store instead. With the profile cache enabled every
+ * session after the first reuses the store, so the cold and cached setup can be compared.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class InitBenchmark {
+
+  //Number of bids in the domain.
+  @Param({"1000", "10000", "100000", "1000000", "10000000"})
+  public int bids;
+
+  //Value of the profileCache parameter.
+  @Param({"false", "true"})
+  public boolean profileCache;
+
+  private LinearAdditiveUtilitySpace profile;
+
+  @Setup(Level.Trial)
+  public void setUpDomain() {
+    profile = SyntheticDomains.profile("bench" + bids, (int) Math.round(Math.log10(bids)), 10, 76);
+  }
+
+  @Benchmark
+  public LocalOHelper init() throws Exception {
+    LocalOHelper helper = new LocalOHelper(profile);
+    helper.init(SyntheticDomains.settings("group76", "SAOP", new ProgressRounds(100, 0, new Date(Long.MAX_VALUE)),
+          new Parameters().with("profileCache", profileCache)), new NullReporter(), new LocalConnection());
+    return helper;
+  }
+}
@@ -0,0 +1,56 @@
+package collabai.group76.bench;
+
+import geniusweb.actions.Action;
+import geniusweb.connection.ConnectionEnd;
+import geniusweb.inform.Inform;
+import geniusweb.references.Reference;
+import java.net.URI;
+import tudelft.utilities.listener.DefaultListenable;
+
+/**
+ * Connection stand-in that keeps the last action sent by the party instead of sending it anywhere.
+ */
+public class LocalConnection extends DefaultListenable<Inform> implements ConnectionEnd<Inform, Action> {
+
+  private Action lastAction;
+  private int sent;
+
+  @Override
+  public void send(Action action) {
+    this.lastAction = action;
+    this.sent++;
+  }
+
+  /**
+   * @return the last action sent, null if nothing was sent
+   */
+  public Action getLastAction() {
+    return lastAction;
+  }
+
+  /**
+   * @return the number of actions sent
+   */
+  public int getSent() {
+    return sent;
+  }
+
+  @Override
+  public Reference getReference() {
+    return null;
+  }
+
+  @Override
+  public URI getRemoteURI() {
+    return null;
+  }
+
+  @Override
+  public void close() {
+  }
+
+  @Override
+  public Throwable getError() {
+    return null;
+  }
+}
@@ -0,0 +1,23 @@
+package collabai.group76.bench;
+
+import collabai.group76.Group76OHelper;
+import geniusweb.inform.Settings;
+import geniusweb.profile.Profile;
+import geniusweb.profileconnection.ProfileInterface;
+
+/**
+ * Group76OHelper that negotiates on a profile held in memory instead of connecting to a profile server.
+ */
+public class LocalOHelper extends Group76OHelper {
+
+  private final Profile localProfile;
+
+  public LocalOHelper(Profile localProfile) {
+    this.localProfile = localProfile;
+  }
+
+  @Override
+  protected ProfileInterface openProfile(Settings settings) {
+    return new LocalProfileInterface(localProfile);
+  }
+}
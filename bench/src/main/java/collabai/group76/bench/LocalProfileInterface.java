@@ -0,0 +1,25 @@
+package collabai.group76.bench;
+
+import geniusweb.profile.Profile;
+import geniusweb.profileconnection.ProfileInterface;
+
+/**
+ * Profile interface on a profile held in memory.
+ */
+public class LocalProfileInterface implements ProfileInterface {
+
+  private final Profile profile;
+
+  public LocalProfileInterface(Profile profile) {
+    this.profile = profile;
+  }
+
+  @Override
+  public Profile getProfile() {
+    return profile;
+  }
+
+  @Override
+  public void close() {
+  }
+}
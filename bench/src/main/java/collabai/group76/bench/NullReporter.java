@@ -0,0 +1,18 @@
+package collabai.group76.bench;
+
+import java.util.logging.Level;
+import tudelft.utilities.logging.Reporter;
+
+/**
+ * Reporter that drops all messages, so benchmarks measure the agent and not the console.
+ */
+public class NullReporter implements Reporter {
+
+  @Override
+  public void log(Level level, String msg) {
+  }
+
+  @Override
+  public void log(Level level, String msg, Throwable thrown) {
+  }
+}
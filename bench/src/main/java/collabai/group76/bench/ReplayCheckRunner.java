@@ -0,0 +1,75 @@
+package collabai.group76.bench;
+
+import collabai.group76.journal.JournalReader;
+import geniusweb.actions.PartyId;
+import geniusweb.inform.Parameters;
+import geniusweb.profile.utilityspace.LinearAdditiveUtilitySpace;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Checks that journaled sessions replay to the same actions. Seeded simulator sessions are run with a journal, each in
+ * its own directory, and every journal is then replayed by {@link ReplayRunner#replay}. Half of the sessions prefetch
+ * bid counts in the background, which must not change what the party sends. The turn and model budgets are set far
+ * beyond what a session needs, so no search is cut short and the replay does not depend on the speed of the machine,
+ * see {@link ReplayClock}. Usage: ReplayCheckRunner [sessions [rounds]], 20 sessions of 200 rounds by default.
+ */
+public class ReplayCheckRunner {
+
+  //Issues and values per issue of the domains played on.
+  private static final int[][] DOMAINS = {{3, 5}, {4, 8}, {5, 10}};
+  private static final double[] CONCESSIONS = {0.2, 1.0, 2.0};
+  private static final int BUDGET_MS = 60000;
+
+  public static void main(String[] args) throws Exception {
+    int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+    int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+    SaopSimulator simulator = new SaopSimulator(Files.createTempDirectory("group76-sim"));
+    Path journals = Files.createTempDirectory("group76-journal");
+    int mismatches = 0;
+    int actions = 0;
+    for (int i = 0; i < sessions; i++) {
+      int d = i % DOMAINS.length;
+      String domain = "rep" + DOMAINS[d][0] + "x" + DOMAINS[d][1];
+      LinearAdditiveUtilitySpace profile = SyntheticDomains.profile(domain, domain + "-a", DOMAINS[d][0],
+            DOMAINS[d][1], 76 + d);
+      ScriptedOpponent opponent = new ScriptedOpponent(new PartyId("opponent"),
+            SyntheticDomains.profile(domain, domain + "-b", DOMAINS[d][0], DOMAINS[d][1], 1076 + d), 0.5,
+            CONCESSIONS[i % CONCESSIONS.length]);
+      Path dir = journals.resolve("session-" + i);
+      simulator.run(profile, opponent, rounds, new Parameters().with("logLevel", "WARNING").with("seed", (long) i)
+            .with("turnBudgetMs", BUDGET_MS).with("modelBudgetMs", BUDGET_MS).with("prefetch", i % 2 == 1)
+            .with("journalDir", dir.toString()));
+      for (String name : names(dir)) {
+        ReplayRunner.Replay replay = ReplayRunner.replay(JournalReader.read(dir, name), null);
+        actions += replay.getRecorded().size();
+        int mismatch = replay.firstMismatch();
+        if (mismatch >= 0) {
+          mismatches++;
+          System.out.printf(Locale.ROOT, "Session %d action %d differs%n  recorded: %s%n  replayed: %s%n", i, mismatch,
+                mismatch < replay.getRecorded().size() ? replay.getRecorded().get(mismatch) : "nothing",
+                mismatch < replay.getReplayed().size() ? replay.getReplayed().get(mismatch) : "nothing");
+        }
+      }
+    }
+    System.out.printf(Locale.ROOT, "%d sessions with %d actions replayed, %d differ%n", sessions, actions,
+          mismatches);
+    if (mismatches > 0) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * @return the names of the journals in a directory
+   */
+  private static List<String> names(Path dir) throws Exception {
+    try (Stream<Path> listing = Files.list(dir)) {
+      return listing.map(file -> file.getFileName().toString().replaceAll("-\\d+\\.journal$", "")).distinct()
+            .collect(Collectors.toList());
+    }
+  }
+}
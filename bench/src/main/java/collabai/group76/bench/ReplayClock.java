@@ -0,0 +1,38 @@
+package collabai.group76.bench;
+
+import collabai.group76.util.Clock;
+
+/**
+ * Clock of a replayed session. It shows the time it was last set to, the time recorded in the journal, plus the time
+ * that passed in the replay since, so the party's turn and model budgets run out while it decides as they did in the
+ * recorded session. A search the recorded session cut short at its budget is only cut at the same point when the
+ * replay runs about as fast, a replay on a faster or slower machine may score more or fewer candidates and send a
+ * different action.
+ */
+public class ReplayClock implements Clock {
+
+  private volatile long millis;
+  private volatile long nanoTime;
+  //The time of the replay when the clock was set.
+  private volatile long setAt = System.nanoTime();
+
+  /**
+   * @param millis   The wall clock time in milliseconds
+   * @param nanoTime The nanosecond time at the same moment
+   */
+  public void set(long millis, long nanoTime) {
+    this.setAt = System.nanoTime();
+    this.millis = millis;
+    this.nanoTime = nanoTime;
+  }
+
+  @Override
+  public long millis() {
+    return millis + (System.nanoTime() - setAt) / 1000000;
+  }
+
+  @Override
+  public long nanoTime() {
+    return nanoTime + (System.nanoTime() - setAt);
+  }
+}
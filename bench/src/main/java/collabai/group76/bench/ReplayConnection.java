@@ -0,0 +1,43 @@
+package collabai.group76.bench;
+
+import collabai.group76.journal.JournalReader;
+import geniusweb.actions.Action;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Connection of a replayed session. It keeps every action the party sends, and on every send moves the clock to the
+ * time the same action was recorded, so the rest of the turn sees the time it saw in the recorded session.
+ */
+public class ReplayConnection extends LocalConnection {
+
+  private final ReplayClock clock;
+  private final List<JournalReader.Entry> recorded;
+  private final List<Action> actions = new ArrayList<>();
+
+  /**
+   * @param clock    The clock of the replayed party
+   * @param recorded The actions recorded in the journal, in the order they were sent
+   */
+  public ReplayConnection(ReplayClock clock, List<JournalReader.Entry> recorded) {
+    this.clock = clock;
+    this.recorded = recorded;
+  }
+
+  @Override
+  public void send(Action action) {
+    if (actions.size() < recorded.size()) {
+      JournalReader.Entry entry = recorded.get(actions.size());
+      clock.set(entry.getWallMillis(), entry.getNanoTime());
+    }
+    actions.add(action);
+    super.send(action);
+  }
+
+  /**
+   * @return the actions sent, in order
+   */
+  public List<Action> getActions() {
+    return actions;
+  }
+}
@@ -0,0 +1,181 @@
+package collabai.group76.bench;
+
+import collabai.group76.Group76Party;
+import collabai.group76.journal.JournalReader;
+import collabai.group76.metrics.Histogram;
+import geniusweb.actions.Action;
+import geniusweb.inform.Inform;
+import geniusweb.inform.Parameters;
+import geniusweb.inform.Settings;
+import geniusweb.references.ProfileRef;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Replays a session recorded in the journal of {@link Group76Party}. The recorded informs are passed to
+ * {@link Group76Party#notifyChange} at full speed, with a {@link ReplayClock} showing the party the times they were
+ * recorded at, advancing while the party decides, and the actions the party sends are compared with the recorded ones.
+ * The session must have been journaled from its settings on, which hold the seed of the session. Prints the first
+ * action that differs and the latency of handling every kind of inform, so recorded sessions can be profiled offline.
+ * The journalDir and learnDir parameters are removed so a replay leaves no files behind, sessions that used learned
+ * statistics may therefore act differently, and so may turns that ran out of their budget, see {@link ReplayClock}.
+ * Usage: ReplayRunner journalDir name [repeats [profileUri]], where name is the journal file name without its sequence
+ * number and profileUri replaces a profile that cannot be reached from here.
+ */
+public class ReplayRunner {
+
+  private static final String[] REMOVED_PARAMETERS = {"journalDir", "learnDir"};
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.err.println("Usage: ReplayRunner journalDir name [repeats [profileUri]]");
+      System.exit(2);
+    }
+    List<JournalReader.Entry> entries = JournalReader.read(Paths.get(args[0]), args[1]);
+    int repeats = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+    URI profile = args.length > 3 ? URI.create(args[3]) : null;
+    Map<String, Histogram> latencies = new TreeMap<>();
+    Replay replay = null;
+    long start = System.nanoTime();
+    for (int i = 0; i < repeats; i++) {
+      replay = replay(entries, profile);
+      replay.latencies.forEach((inform, histogram) -> latencies.computeIfAbsent(inform, k -> new Histogram())
+            .merge(histogram));
+      if (replay.firstMismatch() >= 0) {
+        break;
+      }
+    }
+    System.out.printf(Locale.ROOT, "%d events replayed %d times in %.1f ms%n", entries.size(), repeats,
+          (System.nanoTime() - start) / 1e6);
+    System.out.printf(Locale.ROOT, "%-14s %8s %10s %10s %10s%n", "inform", "count", "p50", "p99", "max");
+    latencies.forEach((inform, histogram) -> System.out.printf(Locale.ROOT, "%-14s %8d %10s %10s %10s%n", inform,
+          histogram.getCount(), micros(histogram.getPercentile(50)), micros(histogram.getPercentile(99)),
+          micros(histogram.getMax())));
+    int mismatch = replay.firstMismatch();
+    if (mismatch < 0) {
+      System.out.printf(Locale.ROOT, "All %d actions match%n", replay.recorded.size());
+      return;
+    }
+    System.out.printf(Locale.ROOT, "Action %d differs%n  recorded: %s%n  replayed: %s%n", mismatch,
+          mismatch < replay.recorded.size() ? replay.recorded.get(mismatch) : "nothing",
+          mismatch < replay.replayed.size() ? replay.replayed.get(mismatch) : "nothing");
+    System.exit(1);
+  }
+
+  /**
+   * Replays a recorded session once on a new party.
+   *
+   * @param entries The events of the session, starting with its settings
+   * @param profile The profile to use instead of the recorded one, null to use the recorded one
+   * @return the recorded and replayed actions and the latency of every inform
+   * @throws IllegalArgumentException if the events do not start with the settings
+   */
+  public static Replay replay(List<JournalReader.Entry> entries, URI profile) {
+    List<JournalReader.Entry> recordedActions = new ArrayList<>();
+    for (JournalReader.Entry entry : entries) {
+      if (!entry.isInform()) {
+        recordedActions.add(entry);
+      }
+    }
+    ReplayClock clock = new ReplayClock();
+    ReplayConnection connection = new ReplayConnection(clock, recordedActions);
+    //Informs are handled inline, so every action is sent before notifyChange returns.
+    Group76Party party = new Group76Party(new NullReporter(), null, clock);
+    party.connect(connection);
+    Map<String, Histogram> latencies = new HashMap<>();
+    boolean first = true;
+    for (JournalReader.Entry entry : entries) {
+      Inform inform = entry.getInform();
+      if (!entry.isInform() || inform == null) {
+        continue;
+      }
+      if (first && !(inform instanceof Settings)) {
+        throw new IllegalArgumentException("Journal does not start with the settings of the session");
+      }
+      first = false;
+      if (inform instanceof Settings) {
+        inform = replaySettings((Settings) inform, profile);
+      }
+      clock.set(entry.getWallMillis(), entry.getNanoTime());
+      long begin = System.nanoTime();
+      party.notifyChange(inform);
+      latencies.computeIfAbsent(inform.getClass().getSimpleName(), k -> new Histogram())
+            .record(System.nanoTime() - begin);
+    }
+    List<Action> recorded = new ArrayList<>();
+    for (JournalReader.Entry entry : recordedActions) {
+      recorded.add(entry.getAction());
+    }
+    return new Replay(recorded, connection.getActions(), latencies);
+  }
+
+  private static Settings replaySettings(Settings settings, URI profile) {
+    Map<String, Object> parameters = new HashMap<>(settings.getParameters().getParameters());
+    for (String parameter : REMOVED_PARAMETERS) {
+      parameters.remove(parameter);
+    }
+    return new Settings(settings.getID(), profile == null ? settings.getProfile() : new ProfileRef(profile),
+          settings.getProtocol(), settings.getProgress(), new Parameters(parameters));
+  }
+
+  private static String micros(long nanos) {
+    return String.format(Locale.ROOT, "%.1fus", nanos / 1e3);
+  }
+
+  /**
+   * Outcome of one replay.
+   */
+  public static class Replay {
+
+    private final List<Action> recorded;
+    private final List<Action> replayed;
+    private final Map<String, Histogram> latencies;
+
+    Replay(List<Action> recorded, List<Action> replayed, Map<String, Histogram> latencies) {
+      this.recorded = recorded;
+      this.replayed = replayed;
+      this.latencies = latencies;
+    }
+
+    /**
+     * @return the index of the first action that differs from the recorded one, -1 if all actions match
+     */
+    public int firstMismatch() {
+      int n = Math.min(recorded.size(), replayed.size());
+      for (int i = 0; i < n; i++) {
+        if (!Objects.equals(recorded.get(i), replayed.get(i))) {
+          return i;
+        }
+      }
+      return recorded.size() == replayed.size() ? -1 : n;
+    }
+
+    /**
+     * @return the actions sent in the recorded session
+     */
+    public List<Action> getRecorded() {
+      return recorded;
+    }
+
+    /**
+     * @return the actions sent in the replay
+     */
+    public List<Action> getReplayed() {
+      return replayed;
+    }
+
+    /**
+     * @return the latency of handling the informs, by simple class name of the inform
+     */
+    public Map<String, Histogram> getLatencies() {
+      return latencies;
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package collabai.group76.bench;
+
+import collabai.group76.Group76Party;
+import collabai.group76.metrics.Histogram;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import geniusweb.actions.Accept;
+import geniusweb.actions.Action;
+import geniusweb.actions.Offer;
+import geniusweb.actions.PartyId;
+import geniusweb.inform.ActionDone;
+import geniusweb.inform.Agreements;
+import geniusweb.inform.Finished;
+import geniusweb.inform.Parameters;
+import geniusweb.inform.Settings;
+import geniusweb.inform.YourTurn;
+import geniusweb.issuevalue.Bid;
+import geniusweb.profile.Profile;
+import geniusweb.profile.utilityspace.LinearAdditive;
+import geniusweb.profile.utilityspace.LinearAdditiveUtilitySpace;
+import geniusweb.progress.ProgressRounds;
+import geniusweb.references.ProfileRef;
+import geniusweb.references.ProtocolRef;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs SAOP sessions between {@link Group76Party} and a {@link ScriptedOpponent} in process. The informs the protocol
+ * would send over the websocket (Settings, YourTurn, ActionDone and Finished) are passed straight to
+ * {@link Group76Party#notifyChange}, and the party's actions are picked up from a {@link LocalConnection}. Our party
+ * takes the first turn. Profiles are written to JSON files once and loaded by the party through its usual file
+ * profile connection. Sessions can be run from several threads at once.
+ */
+public class SaopSimulator {
+
+  private static final PartyId PARTY = new PartyId("group76");
+  private static final ProtocolRef SAOP = new ProtocolRef(URI.create("SAOP"));
+  //Wall clock deadline of a session, only there as a safety net as sessions are round based.
+  private static final long SESSION_TIMEOUT_MS = 60000;
+
+  private final Path profileDir;
+  private final ObjectMapper jackson = new ObjectMapper();
+  private final Map<String, URI> profileFiles = new HashMap<>();
+
+  /**
+   * @param profileDir The directory to write the profiles to
+   */
+  public SaopSimulator(Path profileDir) {
+    this.profileDir = profileDir;
+  }
+
+  /**
+   * Runs one session.
+   *
+   * @param profile    The profile of our party
+   * @param opponent   The opponent
+   * @param rounds     The deadline in rounds
+   * @param parameters The parameters of our party
+   * @return the outcome of the session
+   * @throws IOException if the profile cannot be written
+   */
+  public SessionResult run(LinearAdditiveUtilitySpace profile, ScriptedOpponent opponent, int rounds,
+                           Parameters parameters) throws IOException {
+    URI profileUri = profileFile(profile);
+    LocalConnection connection = new LocalConnection();
+    //Informs are handled inline, so the action can be read as soon as notifyChange returns.
+    Group76Party party = new Group76Party(new NullReporter(), null);
+    party.connect(connection);
+    Histogram turnLatencies = new Histogram();
+    long start = System.nanoTime();
+    party.notifyChange(new Settings(PARTY, new ProfileRef(profileUri), SAOP,
+          new ProgressRounds(rounds, 0, new Date(System.currentTimeMillis() + SESSION_TIMEOUT_MS)), parameters));
+    Bid agreement = null;
+    int round = 0;
+    while (agreement == null && round < rounds) {
+      round++;
+      int sent = connection.getSent();
+      long turnStart = System.nanoTime();
+      party.notifyChange(new YourTurn());
+      turnLatencies.record(System.nanoTime() - turnStart);
+      if (connection.getSent() == sent) {
+        throw new IllegalStateException("Party did not act in round " + round);
+      }
+      Action action = connection.getLastAction();
+      party.notifyChange(new ActionDone(action));
+      if (action instanceof Accept) {
+        agreement = ((Accept) action).getBid();
+      } else {
+        Bid offer = ((Offer) action).getBid();
+        Action response = opponent.respond(offer, (double) round / rounds);
+        party.notifyChange(new ActionDone(response));
+        if (response instanceof Accept) {
+          agreement = offer;
+        }
+      }
+    }
+    Agreements agreements = agreement == null ? new Agreements()
+          : new Agreements(Collections.singletonMap(PARTY, agreement));
+    party.notifyChange(new Finished(agreements));
+    long wallNanos = System.nanoTime() - start;
+    return new SessionResult(profile.getDomain().getName(), wallNanos, round, agreement != null,
+          agreement == null ? 0 : profile.getUtility(agreement).doubleValue(),
+          agreement == null ? 0 : opponent.utility(agreement), turnLatencies);
+  }
+
+  private synchronized URI profileFile(LinearAdditive profile) throws IOException {
+    URI uri = profileFiles.get(profile.getName());
+    if (uri == null) {
+      Path file = profileDir.resolve(profile.getName() + ".json");
+      String json = jackson.writerFor(Profile.class).writeValueAsString(profile);
+      Files.write(file, json.getBytes(StandardCharsets.UTF_8));
+      uri = file.toUri();
+      profileFiles.put(profile.getName(), uri);
+    }
+    return uri;
+  }
+}
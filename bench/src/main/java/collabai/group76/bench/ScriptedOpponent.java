@@ -0,0 +1,76 @@
+package collabai.group76.bench;
+
+import collabai.group76.util.BidCodec;
+import collabai.group76.util.LinearAdditiveEvaluator;
+import collabai.group76.util.SortedBidStore;
+import geniusweb.actions.Accept;
+import geniusweb.actions.Action;
+import geniusweb.actions.Offer;
+import geniusweb.actions.PartyId;
+import geniusweb.issuevalue.Bid;
+import geniusweb.profile.utilityspace.LinearAdditive;
+
+/**
+ * Time dependent opponent for simulated sessions. Its target utility falls from 1 to a minimum as
+ * 1 - (1 - min) * t^(1/e), so an e below 1 concedes late (Boulware) and above 1 early (Conceder). It accepts an offer
+ * that meets its target, and otherwise offers its worst bid that still does.
+ */
+public class ScriptedOpponent {
+
+  private final PartyId id;
+  private final LinearAdditiveEvaluator evaluator;
+  private final SortedBidStore store;
+  private final double minUtility;
+  private final double concession;
+
+  /**
+   * @param id         The id of the opponent
+   * @param profile    The profile of the opponent
+   * @param minUtility The target utility at the deadline
+   * @param concession The concession exponent e
+   */
+  public ScriptedOpponent(PartyId id, LinearAdditive profile, double minUtility, double concession) {
+    this.id = id;
+    this.evaluator = new LinearAdditiveEvaluator(new BidCodec(profile.getDomain()), profile);
+    this.store = SortedBidStore.build(evaluator);
+    this.minUtility = minUtility;
+    this.concession = concession;
+  }
+
+  /**
+   * @return the id of the opponent
+   */
+  public PartyId getId() {
+    return id;
+  }
+
+  /**
+   * @param bid A bid
+   * @return the utility of the bid for the opponent
+   */
+  public double utility(Bid bid) {
+    return evaluator.utility(bid);
+  }
+
+  /**
+   * @param time The progress of the session in [0, 1]
+   * @return the least utility the opponent accepts or offers at that time
+   */
+  public double target(double time) {
+    return 1 - (1 - minUtility) * Math.pow(time, 1 / concession);
+  }
+
+  /**
+   * @param offer The offer made to the opponent, null if none
+   * @param time  The progress of the session in [0, 1]
+   * @return the accept of the offer or a counter offer
+   */
+  public Action respond(Bid offer, double time) {
+    double target = target(time);
+    if (offer != null && utility(offer) >= target) {
+      return new Accept(id, offer);
+    }
+    int count = store.countAtLeast(target);
+    return new Offer(id, store.getBid(Math.max(0, count - 1)));
+  }
+}
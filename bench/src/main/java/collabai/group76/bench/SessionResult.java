@@ -0,0 +1,65 @@
+package collabai.group76.bench;
+
+import collabai.group76.metrics.Histogram;
+
+/**
+ * Outcome and timings of one simulated session.
+ */
+public class SessionResult {
+
+  private final String domain;
+  private final long wallNanos;
+  private final int rounds;
+  private final boolean agreement;
+  private final double utility;
+  private final double opponentUtility;
+  private final Histogram turnLatencies;
+
+  /**
+   * @param domain          The name of the domain
+   * @param wallNanos       The wall time of the whole session
+   * @param rounds          The number of rounds used
+   * @param agreement       True if the session ended in an agreement
+   * @param utility         The utility of the agreement for our party, 0 without agreement
+   * @param opponentUtility The utility of the agreement for the opponent, 0 without agreement
+   * @param turnLatencies   The nanoseconds each of our turns took
+   */
+  public SessionResult(String domain, long wallNanos, int rounds, boolean agreement, double utility,
+                       double opponentUtility, Histogram turnLatencies) {
+    this.domain = domain;
+    this.wallNanos = wallNanos;
+    this.rounds = rounds;
+    this.agreement = agreement;
+    this.utility = utility;
+    this.opponentUtility = opponentUtility;
+    this.turnLatencies = turnLatencies;
+  }
+
+  public String getDomain() {
+    return domain;
+  }
+
+  public long getWallNanos() {
+    return wallNanos;
+  }
+
+  public int getRounds() {
+    return rounds;
+  }
+
+  public boolean isAgreement() {
+    return agreement;
+  }
+
+  public double getUtility() {
+    return utility;
+  }
+
+  public double getOpponentUtility() {
+    return opponentUtility;
+  }
+
+  public Histogram getTurnLatencies() {
+    return turnLatencies;
+  }
+}
@@ -0,0 +1,99 @@
+package collabai.group76.bench;
+
+import geniusweb.actions.PartyId;
+import geniusweb.inform.Parameters;
+import geniusweb.inform.Settings;
+import geniusweb.issuevalue.DiscreteValue;
+import geniusweb.issuevalue.DiscreteValueSet;
+import geniusweb.issuevalue.Domain;
+import geniusweb.issuevalue.ValueSet;
+import geniusweb.profile.utilityspace.DiscreteValueSetUtilities;
+import geniusweb.profile.utilityspace.LinearAdditiveUtilitySpace;
+import geniusweb.profile.utilityspace.ValueSetUtilities;
+import geniusweb.progress.Progress;
+import geniusweb.references.ProfileRef;
+import geniusweb.references.ProtocolRef;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Builds random linear additive domains and profiles of a given size, and the settings to negotiate on them.
+ */
+public final class SyntheticDomains {
+
+  private SyntheticDomains() {
+  }
+
+  /**
+   * Creates a profile on a domain of issues^values bids. Weights and utilities are drawn with three decimals, the
+   * weights summing to exactly 1.
+   *
+   * @param name   The name of the domain and profile
+   * @param issues The number of issues
+   * @param values The number of values of every issue
+   * @param seed   The seed for the weights and utilities
+   * @return the profile
+   */
+  public static LinearAdditiveUtilitySpace profile(String name, int issues, int values, long seed) {
+    return profile(name, name, issues, values, seed);
+  }
+
+  /**
+   * Creates a named profile on a domain of issues^values bids, so several profiles can share one domain.
+   *
+   * @param domainName The name of the domain
+   * @param name       The name of the profile
+   * @param issues     The number of issues
+   * @param values     The number of values of every issue
+   * @param seed       The seed for the weights and utilities
+   * @return the profile
+   */
+  public static LinearAdditiveUtilitySpace profile(String domainName, String name, int issues, int values,
+                                                   long seed) {
+    Random random = new Random(seed);
+    Map<String, ValueSet> issueValues = new HashMap<>();
+    Map<String, ValueSetUtilities> utilities = new HashMap<>();
+    Map<String, BigDecimal> weights = new HashMap<>();
+    int[] shares = new int[issues];
+    int total = 0;
+    for (int i = 0; i < issues; i++) {
+      shares[i] = 1 + random.nextInt(100);
+      total += shares[i];
+    }
+    int remaining = 1000;
+    for (int i = 0; i < issues; i++) {
+      String issue = "issue" + i;
+      int weight = i == issues - 1 ? remaining : shares[i] * 1000 / total;
+      remaining -= weight;
+      weights.put(issue, BigDecimal.valueOf(weight, 3));
+      List<DiscreteValue> valueList = new ArrayList<>();
+      Map<DiscreteValue, BigDecimal> valueUtilities = new HashMap<>();
+      for (int v = 0; v < values; v++) {
+        DiscreteValue value = new DiscreteValue("value" + v);
+        valueList.add(value);
+        valueUtilities.put(value, BigDecimal.valueOf(random.nextInt(1001), 3));
+      }
+      issueValues.put(issue, new DiscreteValueSet(valueList));
+      utilities.put(issue, new DiscreteValueSetUtilities(valueUtilities));
+    }
+    Domain domain = new Domain(domainName, issueValues);
+    return new LinearAdditiveUtilitySpace(domain, name, utilities, weights, null);
+  }
+
+  /**
+   * @param party      The name of the party
+   * @param protocol   The protocol, e.g. SAOP
+   * @param progress   The progress of the session
+   * @param parameters The session parameters
+   * @return settings for a session on a local profile
+   */
+  public static Settings settings(String party, String protocol, Progress progress, Parameters parameters) {
+    return new Settings(new PartyId(party), new ProfileRef(URI.create("file:/" + party)),
+          new ProtocolRef(URI.create(protocol)), progress, parameters);
+  }
+}
@@ -0,0 +1,96 @@
+package collabai.group76.bench;
+
+import collabai.group76.metrics.Histogram;
+import geniusweb.actions.PartyId;
+import geniusweb.inform.Parameters;
+import geniusweb.profile.utilityspace.LinearAdditiveUtilitySpace;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs a tournament of simulated SAOP sessions over synthetic domains of several sizes and prints a summary per
+ * domain: agreement rate, utilities, rounds, session wall time and the latency distribution of our turns.
+ * Usage: TournamentRunner [sessions [rounds]], 1000 sessions of 200 rounds by default.
+ */
+public class TournamentRunner {
+
+  //Issues and values per issue of the domains played on.
+  private static final int[][] DOMAINS = {{3, 5}, {4, 8}, {5, 10}, {6, 10}};
+  //Profiles per side on every domain, paired round robin.
+  private static final int PROFILES = 4;
+  private static final double[] CONCESSIONS = {0.2, 1.0, 2.0};
+
+  public static void main(String[] args) throws Exception {
+    int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+    Path profileDir = Files.createTempDirectory("group76-sim");
+    SaopSimulator simulator = new SaopSimulator(profileDir);
+    Parameters parameters = new Parameters().with("logLevel", "WARNING");
+    List<List<SessionResult>> results = new ArrayList<>();
+    List<LinearAdditiveUtilitySpace[]> ours = new ArrayList<>();
+    List<ScriptedOpponent[]> opponents = new ArrayList<>();
+    for (int d = 0; d < DOMAINS.length; d++) {
+      String domain = "sim" + DOMAINS[d][0] + "x" + DOMAINS[d][1];
+      LinearAdditiveUtilitySpace[] profiles = new LinearAdditiveUtilitySpace[PROFILES];
+      ScriptedOpponent[] scripted = new ScriptedOpponent[PROFILES];
+      for (int p = 0; p < PROFILES; p++) {
+        profiles[p] = SyntheticDomains.profile(domain, domain + "-a" + p, DOMAINS[d][0], DOMAINS[d][1], 76 + p);
+        scripted[p] = new ScriptedOpponent(new PartyId("opponent"),
+              SyntheticDomains.profile(domain, domain + "-b" + p, DOMAINS[d][0], DOMAINS[d][1], 1076 + p), 0.5,
+              CONCESSIONS[p % CONCESSIONS.length]);
+      }
+      ours.add(profiles);
+      opponents.add(scripted);
+      results.add(new ArrayList<>());
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < sessions; i++) {
+      int d = i % DOMAINS.length;
+      int pairing = i / DOMAINS.length;
+      results.get(d).add(simulator.run(ours.get(d)[pairing % PROFILES],
+            opponents.get(d)[(pairing / PROFILES) % PROFILES], rounds, parameters));
+    }
+    double minutes = (System.nanoTime() - start) / 60e9;
+    System.out.printf(Locale.ROOT, "%d sessions in %.1f s, %.0f sessions per minute%n", sessions, minutes * 60,
+          sessions / minutes);
+    System.out.printf(Locale.ROOT, "%-10s %8s %7s %7s %7s %7s %10s %10s %10s %10s %10s%n", "domain", "sessions",
+          "agreed", "util", "oppUtil", "rounds", "wall p50", "wall p99", "turn p50", "turn p99", "turn max");
+    for (List<SessionResult> domainResults : results) {
+      if (!domainResults.isEmpty()) {
+        printSummary(domainResults);
+      }
+    }
+  }
+
+  private static void printSummary(List<SessionResult> results) {
+    Histogram wall = new Histogram();
+    Histogram turns = new Histogram();
+    int agreements = 0;
+    double utility = 0;
+    double opponentUtility = 0;
+    long rounds = 0;
+    for (SessionResult result : results) {
+      wall.record(result.getWallNanos());
+      turns.merge(result.getTurnLatencies());
+      if (result.isAgreement()) {
+        agreements++;
+        utility += result.getUtility();
+        opponentUtility += result.getOpponentUtility();
+      }
+      rounds += result.getRounds();
+    }
+    int n = results.size();
+    System.out.printf(Locale.ROOT, "%-10s %8d %6.1f%% %7.3f %7.3f %7.1f %10s %10s %10s %10s %10s%n",
+          results.get(0).getDomain(), n, 100.0 * agreements / n, agreements == 0 ? 0 : utility / agreements,
+          agreements == 0 ? 0 : opponentUtility / agreements, (double) rounds / n, micros(wall.getPercentile(50)),
+          micros(wall.getPercentile(99)), micros(turns.getPercentile(50)), micros(turns.getPercentile(99)),
+          micros(turns.getMax()));
+  }
+
+  private static String micros(long nanos) {
+    return String.format(Locale.ROOT, "%.1fus", nanos / 1e3);
+  }
+}
@@ -1,7 +1,10 @@
 package collabai.group76;
 
+import collabai.group76.metrics.MetricsSink;
+import collabai.group76.util.Clock;
 import geniusweb.actions.Action;
 import geniusweb.connection.ConnectionEnd;
+import geniusweb.inform.Finished;
 import geniusweb.inform.Inform;
 import geniusweb.inform.Settings;
 import geniusweb.inform.Voting;
@@ -9,46 +12,41 @@ import geniusweb.issuevalue.Bid;
 import geniusweb.party.Capabilities;
 import geniusweb.progress.Progress;
 import geniusweb.progress.ProgressRounds;
-import geniusweb.progress.ProgressTime;
 import java.io.IOException;
 import javax.websocket.DeploymentException;
 import tudelft.utilities.logging.Reporter;
 
 public interface Group76Helper {
 
-  /**
-   * Check if current time is past halftime.
-   *
-   * @param progress The progress variable to check
-   * @return true if past halftime
-   */
-  static Boolean isPastHalfTime(Progress progress) {
-    if (progress instanceof ProgressRounds) {
-      ProgressRounds progressRounds = (ProgressRounds) progress;
-      return progressRounds.get(System.currentTimeMillis()) > 0.5;
-    } else if (progress instanceof ProgressTime) {
-      ProgressTime progressTime = (ProgressTime) progress;
-      return progressTime.get(System.currentTimeMillis()) > 0.5;
-    }
-    return false;
-  }
-
   /**
    * Returns the amount of rounds remaining in our negotiation session. This is the window that we use for
    * calculating acMaxW which is the Max utility value of a bid in a given time range.
    *
    * @param progress The progress variable to check
    * @return Number of rounds left
+   * @throws IllegalArgumentException if the session is not round based, use getMillisToConsider instead
    */
   static Integer getRoundsToConsider(Progress progress) {
     if (progress instanceof ProgressRounds) {
       ProgressRounds progressRounds = (ProgressRounds) progress;
       return progressRounds.getTotalRounds() - progressRounds.getCurrentRound();
     } else {
-      throw new RuntimeException("Not Round Based");
+      throw new IllegalArgumentException("Not Round Based");
     }
   }
 
+  /**
+   * Returns the milliseconds remaining in our negotiation session, the time based counterpart of
+   * getRoundsToConsider.
+   *
+   * @param progress The progress variable to check
+   * @param now      The current time in milliseconds
+   * @return Number of milliseconds left
+   */
+  static Long getMillisToConsider(Progress progress, long now) {
+    return Math.max(0, progress.getTerminationTime().getTime() - now);
+  }
+
   /**
    * * Part of the acceptance conditions for AC_Combi returns true last received bid utility(Scaled by alpha and
    * offset by beta) is greater that our next bid utility
@@ -63,6 +61,12 @@ public interface Group76Helper {
     return a * lastReceivedUtility + b >= nextBidUtility;
   }
 
+  /**
+   * Sets the clock the decisions of the session are based on, before the helper is initialized.
+   * @param clock The clock to read instead of the system clock
+   */
+  void setClock(Clock clock);
+
   /**
    * Inits our helper with the required context vars from our party.
    * @param settings The settings of our session
@@ -80,6 +84,13 @@ public interface Group76Helper {
    */
   void myTurn() throws IOException;
 
+  /**
+   * Gives our utility of a bid.
+   * @param bid The bid to evaluate
+   * @return the utility of the bid, NaN if our profile has no utilities
+   */
+  double getUtility(Bid bid);
+
   /**
    * Checks whether a bid is acceptable.
    * @param bid The bid to check
@@ -117,6 +128,12 @@ public interface Group76Helper {
    */
   ConnectionEnd<Inform, Action> getConnection();
 
+  /**
+   * Gets the sink receiving the metrics of current session.
+   * @return The metrics sink
+   */
+  MetricsSink getMetrics();
+
   /**
    * Gets the capabilities of our agents.
    * @return The capabilities
@@ -129,17 +146,34 @@ public interface Group76Helper {
    */
   String getDescription();
 
+  /**
+   * Handles the outcome of the session, before it is terminated.
+   * @param finished The agreements reached
+   * @throws IOException
+   */
+  void finished(Finished finished) throws IOException;
+
   /**
    * Terminates session.
    */
   void terminate();
 
-  //Not used.
+  /**
+   * Votes on the offers of a MOPAC or MOPAC2 voting round.
+   * @param voting The offers and the powers of the parties
+   * @throws IOException
+   */
   void voting(Voting voting) throws IOException;
 
-  //Not used.
-  void optIn();
+  /**
+   * Sends our votes again when a MOPAC round asks us to opt in.
+   * @throws IOException
+   */
+  void optIn() throws IOException;
 
-  //Not used.
-  void optInWithValue();
+  /**
+   * Sends our votes with value again when a MOPAC2 round asks us to opt in.
+   * @throws IOException
+   */
+  void optInWithValue() throws IOException;
 }
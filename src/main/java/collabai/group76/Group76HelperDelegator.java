@@ -1,10 +1,14 @@
 package collabai.group76;
 
+import collabai.group76.metrics.MetricsSink;
+import collabai.group76.util.Clock;
 import geniusweb.actions.Action;
 import geniusweb.connection.ConnectionEnd;
+import geniusweb.inform.Finished;
 import geniusweb.inform.Inform;
 import geniusweb.inform.Settings;
 import geniusweb.inform.Voting;
+import geniusweb.issuevalue.Bid;
 import geniusweb.party.Capabilities;
 import geniusweb.progress.Progress;
 import java.io.IOException;
@@ -13,57 +17,89 @@ import tudelft.utilities.logging.Reporter;
 
 /**
  * Group76HelperDelegator interface to allow for hotswapping of methods from different agents for faster development
- * and comparison. Each of these methods are defined in the Group76Helper interface.
+ * and comparison. Each of these methods are defined in the Group76Helper interface. Every party has its own delegator,
+ * which gets a new helper from {@link Group76HelperFactory} when the session settings arrive, so parallel sessions in
+ * one JVM each have their own state.
  */
 public class Group76HelperDelegator {
 
-  private static final Group76Helper DEFAULT_HELPER = new Group76RandomParty();
-  private static final Group76Helper O_HELPER = new Group76OHelper();
+  //Null until the settings select the helper.
+  private Group76Helper helper;
 
-  private static final Group76Helper helper = O_HELPER;
+  public Group76HelperDelegator() {
+  }
+
+  public Group76HelperDelegator(Group76Helper helper) {
+    this.helper = helper;
+  }
 
   // Called at the beginning of the negotiation session
-  static void init(Settings settings, Reporter reporter, ConnectionEnd<Inform, Action> connection) throws IOException, DeploymentException {
+  void init(Settings settings, Reporter reporter, ConnectionEnd<Inform, Action> connection, Clock clock)
+        throws IOException, DeploymentException {
+    helper = Group76HelperFactory.create(settings);
+    helper.setClock(clock);
     helper.init(settings, reporter, connection);
   }
 
   //This function is called when it's our turn so that we can take an action.
-  static void myTurn() throws IOException {
+  void myTurn() throws IOException {
     helper.myTurn();
   }
 
-  static public void terminate() {
-   helper.terminate();
+  void finished(Finished finished) throws IOException {
+    helper.finished(finished);
   }
 
-  static void voting(Voting voting) throws IOException {
+  public void terminate() {
+    if (helper != null) {
+      helper.terminate();
+    }
+  }
+
+  void voting(Voting voting) throws IOException {
     helper.voting(voting);
   }
-  static void optIn() {
+  void optIn() throws IOException {
     helper.optIn();
   }
 
-  static void optInWithValue() {
+  void optInWithValue() throws IOException {
     helper.optInWithValue();
   }
 
-  static void setLastBid(Action action) {
+  double getUtility(Bid bid) {
+    return helper.getUtility(bid);
+  }
+
+  void setLastBid(Action action) {
     helper.setLastBid(action);
   }
 
-  static void advanceProgress(Inform info) {
+  void advanceProgress(Inform info) {
     helper.advanceProgress(info);
   }
 
-  static Progress getProgress() {
+  Progress getProgress() {
     return helper.getProgress();
   }
 
-  static Capabilities getCapabilities() {
-    return helper.getCapabilities();
+  MetricsSink getMetrics() {
+    return helper.getMetrics();
+  }
+
+  //Before the settings arrive these are answered for the default helper, without creating one.
+  Capabilities getCapabilities() {
+    return helper == null ? Group76OHelper.CAPABILITIES : helper.getCapabilities();
+  }
+
+  String getDescription() {
+    return helper == null ? Group76OHelper.DESCRIPTION : helper.getDescription();
   }
 
-  static String getDescription() {
-    return helper.getDescription();
+  /**
+   * @return the helper of this party's session, null before the settings arrived
+   */
+  public Group76Helper getHelper() {
+    return helper;
   }
 }
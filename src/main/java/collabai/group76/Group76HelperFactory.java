@@ -0,0 +1,59 @@
+package collabai.group76;
+
+import geniusweb.inform.Settings;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Creates a new helper for every party, so sessions running in the same JVM never share mutable state. The helper is
+ * chosen by the "helper" parameter of the session settings: "ohelper" (the default) for Group76OHelper and "random"
+ * for Group76RandomParty. Other helpers can be registered under their own name.
+ */
+public final class Group76HelperFactory {
+
+  public static final String DEFAULT_HELPER = "ohelper";
+
+  private static final Map<String, Supplier<Group76Helper>> HELPERS = new ConcurrentHashMap<>();
+
+  static {
+    HELPERS.put(DEFAULT_HELPER, Group76OHelper::new);
+    HELPERS.put("random", Group76RandomParty::new);
+  }
+
+  private Group76HelperFactory() {
+  }
+
+  /**
+   * Makes a helper selectable by the helper parameter.
+   *
+   * @param name    The value of the helper parameter that selects it
+   * @param creator Creates a new instance of the helper
+   */
+  public static void register(String name, Supplier<Group76Helper> creator) {
+    HELPERS.put(name, creator);
+  }
+
+  /**
+   * @param name The name of the helper
+   * @return a new instance of the helper
+   * @throws IllegalArgumentException if no helper has the name
+   */
+  public static Group76Helper create(String name) {
+    Supplier<Group76Helper> creator = HELPERS.get(name);
+    if (creator == null) {
+      throw new IllegalArgumentException("Unknown helper: " + name);
+    }
+    return creator.get();
+  }
+
+  /**
+   * @param settings The settings of the session
+   * @return a new instance of the helper selected by the helper parameter
+   * @throws IllegalArgumentException if no helper has the selected name
+   */
+  public static Group76Helper create(Settings settings) {
+    Object name = settings.getParameters().get("helper");
+    return create((name instanceof String) ? (String) name : DEFAULT_HELPER);
+  }
+}
@@ -1,13 +1,41 @@
 package collabai.group76;
 
-import collabai.group76.util.BidUtilPair;
+import collabai.group76.learn.Learner;
+import collabai.group76.learn.OpponentStats;
+import collabai.group76.learn.OpponentStore;
+import collabai.group76.learn.SessionRecord;
+import collabai.group76.metrics.InMemoryMetricsSink;
+import collabai.group76.metrics.MetricsSink;
+import collabai.group76.metrics.MetricsSink.Counter;
+import collabai.group76.metrics.MetricsSink.Timer;
+import collabai.group76.metrics.NoopMetricsSink;
+import collabai.group76.opponent.FrequencyOpponentModel;
+import collabai.group76.opponent.ParetoFrontier;
+import collabai.group76.util.AgentLog;
+import collabai.group76.util.AsyncReporter;
+import collabai.group76.util.BidCodec;
+import collabai.group76.util.BidSampler;
+import collabai.group76.util.BidStore;
+import collabai.group76.util.BidStoreSnapshot;
+import collabai.group76.util.Clock;
+import collabai.group76.util.LinearAdditiveEvaluator;
+import collabai.group76.util.MappedBidStore;
+import collabai.group76.util.ProfileCache;
+import collabai.group76.util.SortedBidStore;
+import collabai.group76.util.StreamingBidStore;
+import collabai.group76.util.TimeBudget;
+import collabai.group76.util.UtilityHistory;
 import geniusweb.actions.Accept;
 import geniusweb.actions.Action;
 import geniusweb.actions.LearningDone;
 import geniusweb.actions.Offer;
 import geniusweb.actions.PartyId;
-import geniusweb.bidspace.AllBidsList;
+import geniusweb.actions.Vote;
+import geniusweb.actions.VoteWithValue;
+import geniusweb.actions.Votes;
+import geniusweb.actions.VotesWithValue;
 import geniusweb.connection.ConnectionEnd;
+import geniusweb.inform.Finished;
 import geniusweb.inform.Inform;
 import geniusweb.inform.OptIn;
 import geniusweb.inform.OptInWithValue;
@@ -25,13 +53,30 @@ import geniusweb.profileconnection.ProfileInterface;
 import geniusweb.progress.Progress;
 import geniusweb.progress.ProgressRounds;
 import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.OptionalDouble;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.management.JMException;
+import javax.management.ObjectName;
 import javax.websocket.DeploymentException;
 import tudelft.utilities.logging.Reporter;
 
@@ -43,6 +88,10 @@ import tudelft.utilities.logging.Reporter;
  * trys to low ball the other while slowly coming closer together in utility as time goes by.
  */
 public class Group76OHelper implements Group76Helper {
+  //Answered before the session starts as well, so they do not depend on any state.
+  static final Capabilities CAPABILITIES = new Capabilities(
+        new HashSet<>(Arrays.asList("SAOP", "MOPAC", "MOPAC2", "Learn")), Collections.singleton(Profile.class));
+  static final String DESCRIPTION = "Group76OAgent uses decoupled acceptance and bidding strategies.";
   //Alpha value for AC_Next
   private static final Double ALPHA = 1.0;
   //Beta value for AC_Next
@@ -52,25 +101,122 @@ public class Group76OHelper implements Group76Helper {
   //Time at which we consider concession
   private static final Double AC_TIME = 0.92;
   private static final Double RES_ALT = 0.5;
+  //Largest bid space we sort in memory, larger domains are streamed. Can be set with the materializeLimit parameter.
+  private static final int MATERIALIZE_LIMIT = 500000;
+  //Number of bids checked when the verifyUtilities parameter is set, and the difference allowed.
+  private static final int VERIFY_SAMPLE = 1000;
+  private static final double VERIFY_TOLERANCE = 1e-9;
+  //Messages that can wait for the background writer when the asyncLog parameter is set.
+  private static final int ASYNC_LOG_CAPACITY = 4096;
+  //Threads of the pool all sessions in this JVM sort their bid space on. Set with the group76.maxInitThreads system
+  //property to run many agents per host.
+  private static final int MAX_INIT_THREADS = Integer.getInteger("group76.maxInitThreads",
+        Runtime.getRuntime().availableProcessors());
+  //Possible bids the opponent model scores per turn, and the time it may take. Set with the modelSamples and
+  //modelBudgetMs parameters.
+  private static final int MODEL_SAMPLES = 256;
+  private static final int MODEL_BUDGET_MS = 2;
+  //Most time a turn may take, set with the turnBudgetMs parameter. Turns get less when the deadline is near.
+  private static final int TURN_BUDGET_MS = 200;
+  //How far below the expected target of our next turn the bids are counted while the opponent thinks, as the
+  //opponent's next offer can lower the target a little.
+  private static final double PREFETCH_MARGIN = 0.01;
+  //Longest the bid store is held by counting ahead at a time, so our turn never waits longer for it.
+  private static final long PREFETCH_SLICE_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+  //Counts ahead the bids of all sessions that set the prefetch parameter, while the opponents think.
+  private static final ExecutorService PREFETCH_EXECUTOR = Executors.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors(), runnable -> {
+          Thread thread = new Thread(runnable, "group76-prefetch");
+          thread.setDaemon(true);
+          return thread;
+        });
+  //Default smallest and largest coalition power our votes ask for, set with the minPower and maxPower parameters.
+  private static final int MIN_POWER = 2;
+  private static final int MAX_POWER = Integer.MAX_VALUE;
+  //Offers in a voting round from which they are scored in parallel.
+  private static final int PARALLEL_VOTING = 64;
+  //Total value a MOPAC2 party distributes over its votes.
+  private static final int VOTE_VALUE_TOTAL = 100;
+  //Number of bids the issue weights learned in earlier sessions count for in the opponent model.
+  private static final int LEARNED_PRIOR_BIDS = 20;
+  //Number of our best bids the Pareto frontier is built from, set with the paretoPool parameter.
+  private static final int PARETO_POOL = 4096;
+  //Seeded from the seed parameter when given, so sessions can be reproduced.
+  private SplittableRandom random;
+  //Time the decisions of the session are based on, replaced to replay a recorded session.
+  private Clock clock = Clock.SYSTEM;
   protected ProfileInterface profileInterface;
   private PartyId partyId;
-  private AllBidsList allBidsList;
+  //Maps the bids of our domain to the indices we use internally.
+  private BidCodec codec;
+  //Compiled utility function, null if the profile is not linear additive.
+  private LinearAdditiveEvaluator evaluator;
   private Progress progress;
+  //Progress read once per turn, with estimates of the turns we have left.
+  private TimeBudget timeBudget;
   private Profile profile;
+  private URI profileUri;
   private String protocol;
   private Reporter reporter;
+  private AgentLog log;
   private ConnectionEnd<Inform, Action> connection;
   private Bid lastBidReceived;
-  private Bid lastBidSent;
-  //Ordered by rounds so index 1 refers to round 1 etc.
-  private ArrayList<BidUtilPair> receivedBidList;
-  private List<Bid> sortedBidArray;
+  private double lastBidReceivedUtility;
+  private long lastBidSentId;
+  private double lastBidSentUtility;
+  //Utilities of the received bids, ordered by rounds so index 1 refers to round 1 etc.
+  private UtilityHistory receivedBidList;
+  //All bids of the domain, best bid first.
+  private BidStore bidStore;
+  private BidSampler sampler;
+  //Draw bids weighted by utility instead of uniformly, set with the weightedSampling parameter.
+  private boolean weightedSampling;
+  //Estimated preferences of the opponent, used to choose between the bids we could offer.
+  private FrequencyOpponentModel opponentModel;
+  private int modelSamples;
+  private long modelBudgetNanos;
+  //Joint efficient bids among our best bids, used to offer the best joint bid when there are few possible bids.
+  private ParetoFrontier paretoFrontier;
+  private int paretoPool;
+  private int materializeLimit;
+  //Sort the bid space on the shared init pool, the initThreads parameter set to 1 sorts on the session's own thread.
+  private boolean parallelInit;
+  private boolean verifyUtilities;
+  private boolean useProfileCache;
+  //Directory of the bid space snapshots, null if they are not used.
+  private Path snapshotDir;
+  //Directory of the session records and the opponent store, null if we do not learn.
+  private Path learnDir;
+  private OpponentStore opponentStore;
+  //Name of the opponent without session specific numbers, known once it made its first bid.
+  private String opponentName;
+  private double firstBidReceivedUtility;
+  //Utility our target concedes to from halfway the session on, learned from earlier sessions against the opponent.
+  private double learnedTargetUtility;
   private Double reservationBidUtility;
   private int bidsReceived;
   private int bidsMade;
-  private boolean wasMyTurn;
+  private MetricsSink metrics = NoopMetricsSink.INSTANCE;
+  //Count ahead the bids of our next turn as soon as our offer went out, set with the prefetch parameter.
+  private boolean prefetch;
+  //Held while the session state is used, by the session thread and while counting ahead.
+  private final ReentrantLock stateLock = new ReentrantLock();
+  //Changes whenever the session state changes, counting ahead then stops.
+  private volatile long stateVersion;
+  //Lowest utility down to which the bids were counted ahead for the coming turn, NaN if they were not.
+  private volatile double prefetchedUtility = Double.NaN;
+  private int minPower;
+  private int maxPower;
+  //Votes we sent in the last voting round, repeated when we are asked to opt in.
+  private Votes lastVotes;
+  private VotesWithValue lastVotesWithValue;
 
 
+  @Override
+  public void setClock(Clock clock) {
+    this.clock = clock;
+  }
+
   /**
    * Initialize the agent with the required session context. We pass in the extra parameter as we have no access to
    * them as we are using a delegator for faster development of different agents
@@ -87,42 +233,376 @@ public class Group76OHelper implements Group76Helper {
     this.progress = settings.getProgress();
     this.protocol = settings.getProtocol().getURI().getPath();
     this.reporter = reporter;
+    if (Boolean.TRUE.equals(settings.getParameters().get("asyncLog"))) {
+      this.reporter = new AsyncReporter(reporter, ASYNC_LOG_CAPACITY);
+    }
+    Object level = settings.getParameters().get("logLevel");
+    this.log = new AgentLog(getReporter(), "<Group76OHelper>: ",
+          (level instanceof String) ? Level.parse((String) level) : Level.INFO);
     this.connection = connection;
+    Object val = settings.getParameters().get("materializeLimit");
+    this.materializeLimit = (val instanceof Integer) ? (Integer) val : MATERIALIZE_LIMIT;
+    val = settings.getParameters().get("turnBudgetMs");
+    this.timeBudget = new TimeBudget(progress,
+          TimeUnit.MILLISECONDS.toNanos((val instanceof Integer) ? (Integer) val : TURN_BUDGET_MS), clock);
+    val = settings.getParameters().get("seed");
+    this.random = (val instanceof Number) ? new SplittableRandom(((Number) val).longValue()) : new SplittableRandom();
+    this.weightedSampling = Boolean.TRUE.equals(settings.getParameters().get("weightedSampling"));
+    this.prefetch = Boolean.TRUE.equals(settings.getParameters().get("prefetch"));
+    val = settings.getParameters().get("modelSamples");
+    this.modelSamples = (val instanceof Integer) ? (Integer) val : MODEL_SAMPLES;
+    val = settings.getParameters().get("modelBudgetMs");
+    this.modelBudgetNanos = TimeUnit.MILLISECONDS.toNanos((val instanceof Integer) ? (Integer) val : MODEL_BUDGET_MS);
+    val = settings.getParameters().get("minPower");
+    this.minPower = (val instanceof Integer) ? (Integer) val : MIN_POWER;
+    val = settings.getParameters().get("maxPower");
+    this.maxPower = (val instanceof Integer) ? (Integer) val : MAX_POWER;
+    val = settings.getParameters().get("paretoPool");
+    this.paretoPool = (val instanceof Integer) ? (Integer) val : PARETO_POOL;
+    val = settings.getParameters().get("initThreads");
+    this.parallelInit = !(val instanceof Integer) || (Integer) val > 1;
+    this.verifyUtilities = Boolean.TRUE.equals(settings.getParameters().get("verifyUtilities"));
+    this.useProfileCache = !Boolean.FALSE.equals(settings.getParameters().get("profileCache"));
+    this.profileUri = settings.getProfile().getURI();
+    Object dir = settings.getParameters().get("snapshotDir");
+    this.snapshotDir = (dir instanceof String) ? Paths.get((String) dir) : null;
+    dir = settings.getParameters().get("learnDir");
+    this.learnDir = (dir instanceof String) ? Paths.get((String) dir) : null;
+    initMetrics(settings.getParameters().get("metrics"));
     if ("Learn".equals(protocol)) {
+      learn();
       getConnection().send(new LearningDone(partyId));
-    } else {
-      this.profileInterface = ProfileConnectionFactory.create(settings.getProfile().getURI(), getReporter());
+      return;
     }
+    this.profileInterface = openProfile(settings);
     Domain domain = profileInterface.getProfile().getDomain();
     this.profile = profileInterface.getProfile();
+    openOpponentStore();
     resetDefaults(domain);
   }
 
+  /**
+   * Ingests the records of the sessions played since the last learning phase into the opponent store.
+   */
+  private void learn() {
+    if (learnDir == null) {
+      return;
+    }
+    try {
+      int sessions = Learner.learn(learnDir);
+      log.log(Level.INFO, "Learned from sessions: {}", sessions);
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Could not learn from sessions", e);
+    }
+  }
+
+  /**
+   * Maps the opponent store of the learning directory. The statistics of the opponent are read when it makes its first
+   * bid.
+   */
+  private void openOpponentStore() {
+    this.opponentStore = null;
+    if (learnDir == null) {
+      return;
+    }
+    try {
+      this.opponentStore = OpponentStore.open(Learner.storeFile(learnDir));
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Could not open opponent store", e);
+    }
+  }
+
+  /**
+   * Reads what we learned about the opponent in earlier sessions on this domain. Its issue weights start the opponent
+   * model, and from halfway the session on our target concedes to the utility our agreements with it used to have or,
+   * if we never agreed, the utility its bids used to concede to.
+   *
+   * @param opponent The id of the opponent
+   */
+  private void identifyOpponent(PartyId opponent) {
+    this.opponentName = opponent.getName().replaceAll("_\\d+", "");
+    this.firstBidReceivedUtility = lastBidReceivedUtility;
+    if (opponentStore == null) {
+      return;
+    }
+    OpponentStats stats;
+    try {
+      stats = opponentStore.get(opponentName, codec.getDomain().getName());
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Could not read opponent statistics", e);
+      return;
+    }
+    if (stats == null) {
+      return;
+    }
+    double[] weights = new double[codec.issueCount()];
+    for (int i = 0; i < weights.length; i++) {
+      weights[i] = stats.getIssueWeight(codec.getIssue(i));
+    }
+    opponentModel.addIssuePrior(weights, LEARNED_PRIOR_BIDS);
+    this.learnedTargetUtility = stats.getAgreements() > 0 ? stats.getAgreementUtility()
+                                : firstBidReceivedUtility + stats.getConcessionSpeed();
+    log.log(Level.INFO, "Learned target utility: {}", learnedTargetUtility);
+  }
+
+  /**
+   * Sets up the metrics sink asked for by the metrics parameter: "memory" keeps the metrics in memory and "jmx" also
+   * registers them as an MBean. Without the parameter no metrics are measured.
+   *
+   * @param type The value of the metrics parameter
+   */
+  private void initMetrics(Object type) {
+    this.metrics.close();
+    if ("memory".equals(type) || "jmx".equals(type)) {
+      InMemoryMetricsSink sink = new InMemoryMetricsSink();
+      if ("jmx".equals(type)) {
+        try {
+          sink.register("collabai.group76:type=Metrics,party=" + ObjectName.quote(partyId.getName()));
+        } catch (JMException e) {
+          log.log(Level.WARNING, "Could not register metrics", e);
+        }
+      }
+      this.metrics = sink;
+    } else {
+      this.metrics = NoopMetricsSink.INSTANCE;
+    }
+  }
+
+  /**
+   * @return the sink receiving the metrics of this session
+   */
+  @Override
+  public MetricsSink getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Replaces the sink receiving the metrics of this session.
+   *
+   * @param metrics The new sink
+   */
+  public void setMetrics(MetricsSink metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Opens the connection to the profile of our session. Can be overridden to run the agent on a local profile, for
+   * example in benchmarks.
+   *
+   * @param settings The settings of our session
+   * @return the profile interface
+   * @throws IOException
+   * @throws DeploymentException
+   */
+  protected ProfileInterface openProfile(Settings settings) throws IOException, DeploymentException {
+    return ProfileConnectionFactory.create(settings.getProfile().getURI(), getReporter());
+  }
+
   /**
    * Resets the state of our agent.
    *
    * @param domain The domain of our negotation
    */
   private void resetDefaults(Domain domain) {
-    if (this.profile instanceof LinearAdditive && this.profile.getReservationBid() != null) {
-      this.reservationBidUtility = ((UtilitySpace) this.profile).getUtility(profile.getReservationBid()).doubleValue();
-      getReporter().log(Level.INFO, "<Group76OHelper>: Reservation bid util: " + reservationBidUtility);
+    this.codec = new BidCodec(domain);
+    if (this.profile instanceof LinearAdditive) {
+      this.evaluator = new LinearAdditiveEvaluator(codec, (LinearAdditive) this.profile);
     } else {
-      this.reservationBidUtility = 0.6;
+      this.evaluator = null;
+    }
+    //Sessions on the same profile share the codec, evaluator and sorted store built by the first of them.
+    long fingerprint = evaluator == null ? profile.hashCode() : evaluator.fingerprint();
+    String cacheKey = null;
+    ProfileCache.Entry cached = null;
+    if (useProfileCache) {
+      cacheKey = ProfileCache.key(profileUri, fingerprint);
+      cached = ProfileCache.shared().get(cacheKey, profile);
+    }
+    if (cached != null) {
+      log.log(Level.INFO, "Reusing cached profile: {}", cacheKey);
+      this.codec = cached.getCodec();
+      this.evaluator = cached.getEvaluator();
+    } else if (evaluator != null && verifyUtilities) {
+      verifyEvaluator();
     }
-    this.allBidsList = new AllBidsList(domain);
-    this.receivedBidList = new ArrayList<>();
-    List<Bid> bidList = new ArrayList<>();
-    for (Bid bid : this.allBidsList) {
-      bidList.add(bid);
+    updateReservationBidUtility();
+    this.receivedBidList = new UtilityHistory();
+    this.opponentModel = new FrequencyOpponentModel(codec);
+    if (cached != null && cached.getStore() != null) {
+      this.bidStore = cached.getStore();
+    } else if (evaluator == null) {
+      this.bidStore = sortBidSpace();
+    } else if (codec.size() > materializeLimit) {
+      log.log(Level.INFO, "Streaming bid space of size: {}", codec.size());
+      this.bidStore = new StreamingBidStore(evaluator, materializeLimit);
+    } else if (snapshotDir != null) {
+      this.bidStore = openSnapshot(fingerprint);
+    } else {
+      this.bidStore = sortBidSpace();
+    }
+    //Streaming stores keep per session state, so only complete stores are shared.
+    boolean shareable = !(bidStore instanceof StreamingBidStore);
+    if (useProfileCache && (cached == null || (cached.getStore() == null && shareable))) {
+      ProfileCache.shared().put(cacheKey, new ProfileCache.Entry(profile, codec, evaluator,
+            shareable ? bidStore : null));
     }
-    bidList.sort(Comparator.comparingDouble(bid -> ((UtilitySpace) this.profile).getUtility(bid).doubleValue()));
-    this.sortedBidArray = Collections.unmodifiableList(bidList);
+    this.paretoFrontier = new ParetoFrontier(bidStore, opponentModel, paretoPool);
+    this.sampler = new BidSampler(bidStore, random);
     this.lastBidReceived = null;
-    this.lastBidSent = null;
+    this.lastBidSentId = BidCodec.NONE;
+    this.lastVotes = null;
+    this.lastVotesWithValue = null;
+    this.opponentName = null;
+    this.learnedTargetUtility = Double.NaN;
     this.bidsMade = 0;
     this.bidsReceived = 0;
-    this.wasMyTurn = false;
+  }
+
+  private void updateReservationBidUtility() {
+    if (this.profile instanceof LinearAdditive && this.profile.getReservationBid() != null) {
+      this.reservationBidUtility = getUtility(profile.getReservationBid());
+      log.log(Level.INFO, "Reservation bid util: {}", reservationBidUtility);
+    } else {
+      this.reservationBidUtility = 0.6;
+    }
+  }
+
+  /**
+   * Picks up a new profile from the profile interface, which can change during a session for example after
+   * elicitation. A profile of the same domain is applied in place so the negotiation history is kept, a profile of
+   * another domain resets the agent.
+   *
+   * @throws IOException
+   */
+  private void refreshProfile() throws IOException {
+    Profile latest = profileInterface.getProfile();
+    if (latest == profile || latest.equals(profile)) {
+      return;
+    }
+    stateVersion++;
+    if (!latest.getDomain().equals(profile.getDomain())) {
+      log.log(Level.INFO, "Profile changed to another domain: {}", latest.getDomain().getName());
+      this.profile = latest;
+      resetDefaults(latest.getDomain());
+      return;
+    }
+    updateProfile(latest);
+  }
+
+  /**
+   * Applies a changed profile of the same domain. When both profiles are linear additive the sorted bids are repaired
+   * by scoring only the bids holding a changed value, otherwise the bid space is sorted again. The received bids and
+   * our last offer are scored again in place.
+   *
+   * @param latest The changed profile
+   */
+  private void updateProfile(Profile latest) {
+    LinearAdditiveEvaluator previous = this.evaluator;
+    int size = bidStore instanceof SortedBidStore ? ((SortedBidStore) bidStore).size()
+               : bidStore instanceof MappedBidStore ? ((MappedBidStore) bidStore).size() : -1;
+    this.profile = latest;
+    this.evaluator = latest instanceof LinearAdditive ? new LinearAdditiveEvaluator(codec, (LinearAdditive) latest) : null;
+    if (previous != null && evaluator != null && size >= 0) {
+      this.bidStore = SortedBidStore.rescore(bidStore, size, previous, evaluator);
+    } else if (evaluator != null && codec.size() > materializeLimit) {
+      this.bidStore = new StreamingBidStore(evaluator, materializeLimit);
+    } else {
+      this.bidStore = sortBidSpace();
+    }
+    if (useProfileCache && !(bidStore instanceof StreamingBidStore)) {
+      long fingerprint = evaluator == null ? profile.hashCode() : evaluator.fingerprint();
+      ProfileCache.shared().put(ProfileCache.key(profileUri, fingerprint),
+            new ProfileCache.Entry(profile, codec, evaluator, bidStore));
+    }
+    log.log(Level.INFO, "Profile changed, rescored bid space: {}", codec.size());
+    updateReservationBidUtility();
+    if (evaluator != null) {
+      receivedBidList.rescore(evaluator::utility);
+    } else {
+      receivedBidList.rescore(bidId -> getUtility(codec.decode(bidId)));
+    }
+    if (lastBidReceived != null) {
+      this.lastBidReceivedUtility = getUtility(lastBidReceived);
+    }
+    if (lastBidSentId != BidCodec.NONE) {
+      this.lastBidSentUtility = getUtility(codec.decode(lastBidSentId));
+    }
+    this.paretoFrontier = new ParetoFrontier(bidStore, opponentModel, paretoPool);
+    this.sampler = new BidSampler(bidStore, random);
+  }
+
+  /**
+   * Scores and sorts all bids of the domain on the init pool shared by all sessions, so sessions starting together
+   * never use more than its threads.
+   *
+   * @return the sorted store
+   */
+  private SortedBidStore sortBidSpace() {
+    ForkJoinPool pool = parallelInit && MAX_INIT_THREADS > 1 ? InitPool.POOL : null;
+    if (evaluator == null) {
+      return SortedBidStore.build(codec, (UtilitySpace) this.profile, pool);
+    }
+    return SortedBidStore.build(evaluator, pool);
+  }
+
+  /**
+   * Maps the snapshot of the sorted bid space from the snapshot directory. If there is none, or it is corrupt or
+   * stale, the bid space is sorted and a new snapshot is written for the next session.
+   *
+   * @param fingerprint The fingerprint of the profile
+   * @return the store of all bids
+   */
+  private BidStore openSnapshot(long fingerprint) {
+    Path file = BidStoreSnapshot.path(snapshotDir, evaluator, fingerprint);
+    try {
+      BidStore mapped = BidStoreSnapshot.load(file, evaluator, fingerprint);
+      if (mapped != null) {
+        log.log(Level.INFO, "Mapped bid space snapshot: {}", file);
+        return mapped;
+      }
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Rebuilding bid space snapshot", e);
+    }
+    SortedBidStore store = sortBidSpace();
+    try {
+      BidStoreSnapshot.write(file, store, fingerprint);
+      log.log(Level.INFO, "Wrote bid space snapshot: {}", file);
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Could not write bid space snapshot", e);
+    }
+    return store;
+  }
+
+  /**
+   * Checks the compiled evaluator against the profile on bids spread evenly over the domain.
+   *
+   * @throws IllegalStateException if the evaluator gives a different utility
+   */
+  private void verifyEvaluator() {
+    long step = Math.max(1, codec.size() / VERIFY_SAMPLE);
+    long[] sample = new long[(int) Math.min(codec.size(), VERIFY_SAMPLE)];
+    for (int i = 0; i < sample.length; i++) {
+      sample[i] = i * step;
+    }
+    evaluator.verify((UtilitySpace) this.profile, sample, VERIFY_TOLERANCE);
+    log.log(Level.INFO, "Verified utilities of {} bids", sample.length);
+  }
+
+  /**
+   * Gives the utility of a bid, using the compiled evaluator when we have one.
+   *
+   * @param bid The bid to evaluate
+   * @return the utility of the bid, NaN if our profile has no utilities
+   */
+  @Override
+  public double getUtility(Bid bid) {
+    if (evaluator != null) {
+      return evaluator.utility(bid);
+    }
+    if (!(profile instanceof UtilitySpace)) {
+      return Double.NaN;
+    }
+    return ((UtilitySpace) profile).getUtility(bid).doubleValue();
   }
 
   /**
@@ -133,20 +613,56 @@ public class Group76OHelper implements Group76Helper {
    */
   @Override
   public void myTurn() throws IOException {
+    //The turn starts now, even if counting ahead still holds the lock for the rest of its slice.
+    timeBudget.startTurn();
+    stateLock.lock();
+    try {
+      takeTurn();
+    } finally {
+      stateVersion++;
+      stateLock.unlock();
+    }
+  }
+
+  private void takeTurn() throws IOException {
+    refreshProfile();
+    long turnStart = metrics.isEnabled() ? System.nanoTime() : 0;
     // Logging the process
-    getReporter().log(Level.INFO, "<Group76OHelper>: It's my turn!");
+    log.log(Level.INFO, "It's my turn!");
     Action action;
-    if (lastBidReceived != null && isAcceptable(lastBidReceived)) {
-      getReporter().log(Level.INFO, "<Group76OHelper>: Accepted Util: " + ((UtilitySpace) profile).getUtility(this.lastBidReceived).doubleValue());
+    boolean acceptable = false;
+    //In MOPAC offers are accepted by voting, not on our turn.
+    if (lastBidReceived != null && ("SAOP".equals(protocol) || "SHAOP".equals(protocol))) {
+      long acceptanceStart = metrics.isEnabled() ? System.nanoTime() : 0;
+      acceptable = isAcceptable(lastBidReceivedUtility);
+      if (metrics.isEnabled()) {
+        metrics.recordLatency(Timer.ACCEPTANCE, System.nanoTime() - acceptanceStart);
+      }
+    }
+    if (acceptable) {
+      log.log(Level.INFO, "Accepted Util: {}", lastBidReceivedUtility);
       action = new Accept(partyId, lastBidReceived);
+      metrics.increment(Counter.ACCEPTS);
     } else {
-      Bid bid = createBid();
-      action = new Offer(partyId, bid);
-      lastBidSent = bid;
-      getReporter().log(Level.INFO, "<Group76OHelper>: Bids made: " + ++bidsMade);
+      long bidStart = metrics.isEnabled() ? System.nanoTime() : 0;
+      double nextBidUtility = getNextBidUtility();
+      countPrefetch(nextBidUtility);
+      int rank = createBidRank(nextBidUtility, timeBudget.getDeadline());
+      if (metrics.isEnabled()) {
+        metrics.recordLatency(Timer.BID_GENERATION, System.nanoTime() - bidStart);
+      }
+      metrics.increment(Counter.OFFERS);
+      action = new Offer(partyId, bidStore.getBid(rank));
+      lastBidSentId = bidStore.getBidId(rank);
+      lastBidSentUtility = bidStore.getUtility(rank);
+      bidsMade++;
+      log.log(Level.INFO, "Bids made: {}", bidsMade);
     }
-    wasMyTurn = true;
     getConnection().send(action);
+    timeBudget.endTurn();
+    if (metrics.isEnabled()) {
+      metrics.recordLatency(Timer.TURN, System.nanoTime() - turnStart);
+    }
   }
 
   /**
@@ -160,33 +676,58 @@ public class Group76OHelper implements Group76Helper {
    */
   @Override
   public boolean isAcceptable(Bid bid) {
-    double receivedBidUtil = ((UtilitySpace) profile).getUtility(bid).doubleValue();
+    stateLock.lock();
+    try {
+      return isAcceptable(getUtility(bid));
+    } finally {
+      stateLock.unlock();
+    }
+  }
+
+  /**
+   * Checks whether a bid of the given utility is acceptable, see {@link #isAcceptable(Bid)}.
+   *
+   * @param receivedBidUtil The utility of the bid to check
+   * @return true if we can accept
+   */
+  private boolean isAcceptable(double receivedBidUtil) {
     double nextBidUtility = getNextBidUtility();
-    getReporter().log(Level.INFO, "<Group76OHelper>: progress: " + progress.get(System.currentTimeMillis()));
-    getReporter().log(Level.INFO, "<Group76OHelper>: current round: " + ((ProgressRounds) progress).getCurrentRound());
+    double time = timeBudget.getTime();
+    log.log(Level.INFO, "progress: {}", time);
+    if (progress instanceof ProgressRounds) {
+      log.log(Level.INFO, "current round: {}", (long) ((ProgressRounds) progress).getCurrentRound());
+    }
     //Start conceding as we pass halftime else check if AC_Next ias true
-    if (Group76Helper.isPastHalfTime(this.progress)) {
-      int roundsToConsider = Group76Helper.getRoundsToConsider(this.progress) / 2;
+    if (time > 0.5) {
       int size = receivedBidList.size();
-      getReporter().log(Level.INFO, "<Group76OHelper>: rounds to consider: " + roundsToConsider);
-      getReporter().log(Level.INFO, "<Group76OHelper>: list size: " + size);
+      log.log(Level.INFO, "list size: {}", size);
+      //Consider the bids of the last half of the rounds or the time that is left.
+      if (progress instanceof ProgressRounds) {
+        int roundsToConsider = Group76Helper.getRoundsToConsider(this.progress) / 2;
+        log.log(Level.INFO, "rounds to consider: {}", roundsToConsider);
+        receivedBidList.slideWindow(roundsToConsider);
+      } else {
+        long millisToConsider = Group76Helper.getMillisToConsider(this.progress, timeBudget.getTurnStart()) / 2;
+        log.log(Level.INFO, "millis to consider: {}", millisToConsider);
+        receivedBidList.slideWindowSince(timeBudget.getTurnStart() - millisToConsider);
+      }
+      metrics.recordWindowSize(receivedBidList.windowSize());
       //Average utility of the bids received in the time window provided by rounds to consider
-      OptionalDouble acAvg =
-            this.receivedBidList.subList(size - (roundsToConsider), size).stream().mapToDouble(BidUtilPair::getUtil).average();
+      double acAvg = this.receivedBidList.windowAverage();
       //Max utility of the bids received in the time window provided by rounds to consider
-      OptionalDouble acMaxW =
-            this.receivedBidList.subList(size - (roundsToConsider), size).stream().mapToDouble(BidUtilPair::getUtil).max();
+      double acMaxW = this.receivedBidList.windowMax();
       //Max utility of all bids received
-      OptionalDouble acMaxT = this.receivedBidList.stream().mapToDouble(BidUtilPair::getUtil).max();
+      double acMaxT = this.receivedBidList.max();
       boolean acCombi = false;
-      if (acMaxT.isPresent()) {
-        getReporter().log(Level.INFO, "<Group76OHelper>: acMaxT: " + acMaxT.getAsDouble());
-        //Checks if AC_NEXT is true or time is greater than AC_TIME and the received bid utility is higher than or
-        // equal to any bid utility received before.
+      if (!receivedBidList.isEmpty()) {
+        log.log(Level.INFO, "acMaxT: {}", acMaxT);
+        //Checks if AC_NEXT is true or time is greater than AC_TIME (or this is our last turn) and the received bid
+        // utility is higher than or equal to any bid utility received before.
         acCombi =
-              (Group76Helper.acNext(ALPHA, BETA, receivedBidUtil, nextBidUtility) || progress.get(System.currentTimeMillis()) > AC_TIME)
-              && (receivedBidUtil >= acMaxT.getAsDouble()) && receivedBidUtil > reservationBidUtility;
-        getReporter().log(Level.INFO, "<Group76OHelper>: AC_Combi: " + acCombi);
+              (Group76Helper.acNext(ALPHA, BETA, receivedBidUtil, nextBidUtility) || time > AC_TIME
+               || timeBudget.isFinalTurn())
+              && (receivedBidUtil >= acMaxT) && receivedBidUtil > reservationBidUtility;
+        log.log(Level.INFO, "AC_Combi: {}", acCombi);
       }
       return acCombi;
     } else {
@@ -196,16 +737,62 @@ public class Group76OHelper implements Group76Helper {
 
   @Override
   public void setLastBid(Action action) {
-    if (!wasMyTurn) {
-      getReporter().log(Level.INFO, "<Group76OHelper>: Bids Received: " + ++bidsReceived);
-      this.lastBidReceived = ((Offer) action).getBid();
-      double lastReceivedBidUtil = ((UtilitySpace) profile).getUtility(this.lastBidReceived).doubleValue();
-      receivedBidList.add(new BidUtilPair(this.lastBidReceived,
-            lastReceivedBidUtil));
-      getReporter().log(Level.INFO, "<Group76OHelper>: Last Recieved Bid util: " + lastReceivedBidUtil);
-    } else {
-      wasMyTurn = false;
+    //The echo of our own offer: the opponent is thinking now, which is when we can count ahead.
+    boolean countAhead = prefetch && partyId.equals(action.getActor());
+    double expectedUtility = Double.NaN;
+    stateVersion++;
+    stateLock.lock();
+    try {
+      updateLastBid(action);
+      if (countAhead) {
+        expectedUtility = nextBidUtility(progress.get(clock.millis()));
+      }
+    } finally {
+      stateLock.unlock();
     }
+    if (countAhead) {
+      long version = stateVersion;
+      double utility = expectedUtility - PREFETCH_MARGIN;
+      prefetchedUtility = Double.NaN;
+      PREFETCH_EXECUTOR.execute(() -> prefetchBids(utility, version));
+    }
+  }
+
+  /**
+   * Records an offer of another party. Our own offers are told apart by their actor, so this also holds with more
+   * than two parties. In MOPAC the offers of a round are recorded from the Voting inform instead, which holds all of
+   * them.
+   */
+  private void updateLastBid(Action action) {
+    if (partyId.equals(action.getActor()) || isVotingProtocol()) {
+      return;
+    }
+    receiveBid(action.getActor(), ((Offer) action).getBid(), getUtility(((Offer) action).getBid()));
+  }
+
+  /**
+   * Adds a bid of another party to the received bids and the opponent model, and makes it the last received bid.
+   *
+   * @param actor   The party that offered it, identifies the opponent if that was not done yet
+   * @param bid     The bid
+   * @param utility Our utility of the bid
+   */
+  private void receiveBid(PartyId actor, Bid bid, double utility) {
+    bidsReceived++;
+    log.log(Level.INFO, "Bids Received: {}", bidsReceived);
+    this.lastBidReceived = bid;
+    this.lastBidReceivedUtility = utility;
+    long bidId = codec.encode(bid);
+    if (opponentName == null && actor != null) {
+      identifyOpponent(actor);
+    }
+    receivedBidList.add(bidId, utility, clock.millis());
+    opponentModel.update(bidId);
+    log.log(Level.INFO, "Last Recieved Bid util: {}", lastBidReceivedUtility);
+  }
+
+  private boolean isVotingProtocol() {
+    return "MOPAC".equals(protocol) || "MOPAC2".equals(protocol);
   }
 
   @Override
@@ -232,7 +819,14 @@ public class Group76OHelper implements Group76Helper {
     }
     // if we get here, round must be increased.
     if (progress instanceof ProgressRounds) {
-      progress = ((ProgressRounds) progress).advance();
+      stateVersion++;
+      stateLock.lock();
+      try {
+        progress = ((ProgressRounds) progress).advance();
+        timeBudget.setProgress(progress);
+      } finally {
+        stateLock.unlock();
+      }
     }
   }
 
@@ -254,16 +848,53 @@ public class Group76OHelper implements Group76Helper {
 
   @Override
   public Capabilities getCapabilities() {
-    return new Capabilities(new HashSet<>(Collections.singletonList("SAOP")), Collections.singleton(Profile.class));
+    return CAPABILITIES;
   }
 
   @Override
   public String getDescription() {
-    return "Group76OAgent uses decoupled acceptance and bidding strategies.";
+    return DESCRIPTION;
+  }
+
+  /**
+   * Adds the record of this session to the learning directory, for the next learning phase.
+   *
+   * @param finished The agreements reached
+   */
+  @Override
+  public void finished(Finished finished) {
+    if (learnDir == null || opponentName == null) {
+      return;
+    }
+    SessionRecord record;
+    stateLock.lock();
+    try {
+      Bid agreement = finished.getAgreements().getMap().get(partyId);
+      String[] issues = new String[codec.issueCount()];
+      for (int i = 0; i < issues.length; i++) {
+        issues[i] = codec.getIssue(i);
+      }
+      double time = Math.min(1.0, Math.max(0.0, progress.get(clock.millis())));
+      record = new SessionRecord(opponentName, codec.getDomain().getName(), time, firstBidReceivedUtility,
+            lastBidReceivedUtility, agreement == null ? Double.NaN : getUtility(agreement), issues,
+            opponentModel.issueWeights());
+    } finally {
+      stateLock.unlock();
+    }
+    try {
+      Learner.record(learnDir, record);
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Could not record session", e);
+    }
   }
 
   @Override
   public void terminate() {
+    stateVersion++;
+    metrics.close();
+    if (this.reporter instanceof AsyncReporter) {
+      ((AsyncReporter) this.reporter).close();
+    }
     if (this.profileInterface != null) {
       this.profileInterface.close();
       this.profileInterface = null;
@@ -274,70 +905,169 @@ public class Group76OHelper implements Group76Helper {
    * Creates a bid by getting the next utility value and getting a random bid from the list of bids of utilities
    * greater than or equal to the next bid utility. If the list of possible bids is empty or has only one element
    * (prevents it from being stuck on the same bid of utility 1) find the next bid this utility less than or sent
-   * utility.
+   * utility. Outside a turn the search gets the model budget from now as its deadline.
    *
    * @return the bid to make
    */
   public Bid createBid() {
-    List<Bid> possibleBids;
-    Double nextBidUtility = getNextBidUtility();
-    possibleBids = getBidsWithUtility(nextBidUtility);
-    getReporter().log(Level.INFO, "<Group76OHelper>: Finding Bids of value: " + nextBidUtility);
+    stateLock.lock();
+    try {
+      return bidStore.getBid(createBidRank(getNextBidUtility(), clock.nanoTime() + modelBudgetNanos));
+    } finally {
+      stateLock.unlock();
+    }
+  }
+
+  /**
+   * Counts the bids down to about the target utility of our next turn in the background, while the opponent thinks.
+   * Only the bid store is advanced, which does not depend on what the opponent does next, so neither the opponent
+   * model nor the random generator of the session are touched and a seeded session makes the same bids with or
+   * without it. The store is held a short slice at a time, and counting stops as soon as our turn wants the lock or
+   * the state changes.
+   *
+   * @param utility The utility to count the bids down to
+   * @param version The state version when our offer went out
+   */
+  private void prefetchBids(double utility, long version) {
+    try {
+      while (version == stateVersion && !stateLock.hasQueuedThreads()) {
+        stateLock.lock();
+        try {
+          if (version != stateVersion) {
+            return;
+          }
+          if (bidStore.isCounted(utility)) {
+            prefetchedUtility = utility;
+            return;
+          }
+          bidStore.countAtLeast(utility, clock, clock.nanoTime() + PREFETCH_SLICE_NANOS);
+        } finally {
+          stateLock.unlock();
+        }
+      }
+    } catch (RuntimeException e) {
+      log.log(Level.WARNING, "Could not count bids ahead", e);
+    }
+  }
+
+  /**
+   * Counts whether the bids of this turn were already counted while the opponent was thinking.
+   *
+   * @param nextBidUtility The target utility of this turn
+   */
+  private void countPrefetch(double nextBidUtility) {
+    double prefetched = prefetchedUtility;
+    prefetchedUtility = Double.NaN;
+    if (!prefetch) {
+      return;
+    }
+    metrics.increment(prefetched <= nextBidUtility ? Counter.PREFETCH_HITS : Counter.PREFETCH_MISSES);
+  }
+
+  /**
+   * Picks the bid to make, see {@link #createBid()}.
+   *
+   * @return the rank of the bid in our bid store
+   */
+  private int createBidRank(double nextBidUtility, long deadline) {
+    //The possible bids are the ranks below this count in the store, a streaming store may not find all before the deadline.
+    int possibleBids = bidStore.countAtLeast(nextBidUtility, clock, deadline);
+    log.log(Level.INFO, "Finding Bids of value: {}", nextBidUtility);
     // If there is no bid having utility value >= acceptableUtilityValue
-    if (possibleBids.size() <= 1) {
+    if (possibleBids <= 1) {
       // Getting the bid having the highest utility value
-      for (int i = sortedBidArray.size() - 1; i > 0; i--) {
-        if (((UtilitySpace) this.profile).getUtility(sortedBidArray.get(i)).doubleValue() <= nextBidUtility) {
-          Bid maxUtilityBid = sortedBidArray.get(i);
-          possibleBids.add(maxUtilityBid);
-          getReporter().log(Level.INFO, "<Group76OHelper>: Found bid of utility: " + ((UtilitySpace) this.profile).getUtility(sortedBidArray.get(i)).doubleValue());
-          break;
+      int maxUtilityRank = bidStore.floorRank(nextBidUtility);
+      if (maxUtilityRank >= 0) {
+        log.log(Level.INFO, "Found bid of utility: {}", bidStore.getUtility(maxUtilityRank));
+        //Pick evenly between the only possible bid (if any) and the one we found.
+        if (possibleBids == 0 || sampler.nextBoolean()) {
+          metrics.increment(Counter.FALLBACK_BIDS);
+          return maxUtilityRank;
         }
       }
     }
-    Collections.shuffle(possibleBids);
-    return possibleBids.get(0);
+    if (possibleBids <= paretoPool && opponentModel.getBidsSeen() > 0) {
+      //All possible bids are in the frontier's pool, so offer the one with the best Nash product.
+      int jointRank = paretoFrontier.bestJointRank(nextBidUtility, clock, deadline);
+      if (jointRank >= 0) {
+        return jointRank;
+      }
+    }
+    return pickForOpponent(possibleBids, deadline);
+  }
+
+  /**
+   * Picks the possible bid the opponent model estimates best for the opponent. When there are more possible bids than
+   * modelSamples, a random sample of them is scored, and scoring stops when the model budget of this turn is used up.
+   *
+   * @param possibleBids The number of bids we could offer, these are the ranks below it
+   * @return the rank of the bid to offer
+   */
+  private int pickForOpponent(int possibleBids, long deadline) {
+    if (opponentModel.getBidsSeen() == 0 || modelSamples <= 0) {
+      return weightedSampling ? sampler.weightedRankBelow(possibleBids) : sampler.uniformRankBelow(possibleBids);
+    }
+    long stop = Math.min(clock.nanoTime() + modelBudgetNanos, deadline);
+    boolean sample = possibleBids > modelSamples;
+    int candidates = Math.min(possibleBids, modelSamples);
+    int bestRank = 0;
+    double bestUtility = Double.NEGATIVE_INFINITY;
+    for (int n = 0; n < candidates; n++) {
+      int rank = sample ? sampler.uniformRankBelow(possibleBids) : n;
+      double utility = opponentModel.utility(bidStore.getBidId(rank));
+      if (utility > bestUtility) {
+        bestUtility = utility;
+        bestRank = rank;
+      }
+      //Reading the clock costs about as much as scoring a bid, so only check it now and then.
+      if ((n & 31) == 31 && clock.nanoTime() - stop > 0) {
+        break;
+      }
+    }
+    log.log(Level.FINE, "Opponent utility of chosen bid: {}", bestUtility);
+    return bestRank;
   }
 
   /**
    * Returns the next bid utility. If this is first bid of session use AC_CONST, otherwise add a factor scaled by
    * utility and time to the reservation bid. This will prevent us from making bids of utility less than the
    * reservation bid. If reservation bid is less than RES_ALT(0.5) use RES_ALT, otherwise we concede too fast, as
-   * AC_NEXT becomes true. This will reduce the weight we give to time and the utility of the opponents bids.
+   * AC_NEXT becomes true. This will reduce the weight we give to time and the utility of the opponents bids. The time
+   * is the progress read at the start of the current turn. From halfway the session on the utility is at most what
+   * we learned to agree on with the opponent in earlier sessions, but never below the reservation bid or RES_ALT, so
+   * our bids reach the agreement zone sooner.
    *
    * @return
    */
   public Double getNextBidUtility() {
+    return nextBidUtility(timeBudget.getTime());
+  }
+
+  /**
+   * @param time The progress of the session
+   * @return the next bid utility at that progress, see {@link #getNextBidUtility()}
+   */
+  private double nextBidUtility(double time) {
     if (lastBidReceived == null) {
       return AC_CONST;
-    } else {
-      if (this.reservationBidUtility < RES_ALT) {
-        return ((1 - RES_ALT) / 4.0) * (1 - progress.get(System.currentTimeMillis()))
-               + ((1 - RES_ALT) * (3.0 / 4.0)) * getAverageUtil()
-               + RES_ALT;
-      } else {
-        return ((1 - reservationBidUtility) / 4.0) * (1 - progress.get(System.currentTimeMillis()))
-               + ((1 - reservationBidUtility) * (3.0 / 4.0)) * getAverageUtil()
-               + this.reservationBidUtility;
-      }
     }
+    double floor = Math.max(reservationBidUtility, RES_ALT);
+    double target = ((1 - floor) / 4.0) * (1 - time) + ((1 - floor) * (3.0 / 4.0)) * getAverageUtil() + floor;
+    //Concede to the learned agreement zone from halftime on.
+    if (time > 0.5 && !Double.isNaN(learnedTargetUtility)) {
+      target = Math.max(Math.min(target, learnedTargetUtility), floor);
+    }
+    return target;
   }
 
   /**
    * Finds all bids of utility greater than or equal to given utility.
    *
    * @param utility The utility to use
-   * @return list of possible bids.
+   * @return read only list of possible bids, best bid first.
    */
   public List<Bid> getBidsWithUtility(Double utility) {
-    List<Bid> acceptableBids = new ArrayList<>();
-    for (Bid bid : this.allBidsList) {
-      double bidUtility = ((UtilitySpace) this.profile).getUtility(bid).doubleValue();
-      if (bidUtility >= utility) {
-        acceptableBids.add(bid);
-      }
-    }
-    return acceptableBids;
+    return bidStore.bidsAtLeast(utility);
   }
 
   /**
@@ -347,28 +1077,189 @@ public class Group76OHelper implements Group76Helper {
    */
   public Double getAverageUtil() {
     double lastSentBidUtil;
-    if (lastBidSent != null) {
-      lastSentBidUtil = ((UtilitySpace) profile).getUtility(lastBidSent).doubleValue();
+    if (lastBidSentId != BidCodec.NONE) {
+      lastSentBidUtil = lastBidSentUtility;
     } else {
       lastSentBidUtil = AC_CONST;
     }
-    double lastReceivedBidUtil = ((UtilitySpace) profile).getUtility(lastBidReceived).doubleValue();
-    return (lastReceivedBidUtil + lastSentBidUtil) / 2.0;
+    return (lastBidReceivedUtility + lastSentBidUtil) / 2.0;
   }
 
+  /**
+   * Votes on the offers of a voting round. All offers are scored in one batch, and we vote for the offers we would
+   * accept on our own turn: those at least as good as our next bid and better than our reservation bid. In MOPAC2 the
+   * vote values are shared out over these offers by how much they beat our next bid.
+   * <p>
+   * Before the threshold is set the offers of the other parties are recorded as received bids, with the one best for
+   * us recorded last, so our next bid concedes towards what the others offer. With several other parties they are
+   * modelled as one opponent, and the opponent is only identified for learning when there is exactly one.
+   *
+   * @param voting The offers to vote on and the power of every party
+   * @throws IOException
+   */
   @Override
   public void voting(Voting voting) throws IOException {
+    Action votes;
+    stateLock.lock();
+    try {
+      refreshProfile();
+      List<Bid> bids = voting.getOffers().stream().map(Offer::getBid).distinct().collect(Collectors.toList());
+      double[] utilities = scoreBids(bids);
+      receiveOffers(voting, bids, utilities);
+      //Our target can lie above the best bid of the domain, the best bid is then still good enough.
+      double threshold = Math.max(Math.min(getNextBidUtility(), bidStore.getUtility(0)), reservationBidUtility);
+      List<Integer> good = new ArrayList<>();
+      for (int i = 0; i < utilities.length; i++) {
+        if (utilities[i] >= threshold) {
+          good.add(i);
+        }
+      }
+      //A vote can never get more power than all parties have together.
+      int totalPower = voting.getPowers().values().stream().mapToInt(Integer::intValue).sum();
+      int min = Math.max(1, Math.min(minPower, totalPower));
+      int max = Math.max(min, maxPower);
+      log.log(Level.INFO, "Offers voted for: {}", good.size());
+      if ("MOPAC2".equals(protocol)) {
+        lastVotesWithValue = votesWithValue(bids, utilities, good, threshold, min, max);
+        votes = lastVotesWithValue;
+      } else {
+        Set<Vote> set = new HashSet<>();
+        for (int i : good) {
+          set.add(new Vote(partyId, bids.get(i), min, max));
+        }
+        lastVotes = new Votes(partyId, set);
+        votes = lastVotes;
+      }
+    } finally {
+      stateLock.unlock();
+    }
+    getConnection().send(votes);
+  }
 
+  /**
+   * Records the offers of the other parties in a voting round, the offer best for us last.
+   *
+   * @param voting    The voting round
+   * @param bids      The distinct bids of the round
+   * @param utilities Our utility of every bid, at the same position
+   */
+  private void receiveOffers(Voting voting, List<Bid> bids, double[] utilities) {
+    Map<Bid, Integer> positions = new HashMap<>();
+    for (int i = 0; i < bids.size(); i++) {
+      positions.put(bids.get(i), i);
+    }
+    List<Offer> offers = new ArrayList<>();
+    int best = -1;
+    for (Offer offer : voting.getOffers()) {
+      if (!partyId.equals(offer.getActor())) {
+        offers.add(offer);
+        if (best < 0 || utilities[positions.get(offer.getBid())]
+                        > utilities[positions.get(offers.get(best).getBid())]) {
+          best = offers.size() - 1;
+        }
+      }
+    }
+    if (best >= 0) {
+      offers.add(offers.remove(best));
+    }
+    boolean oneOpponent = voting.getPowers().keySet().stream().filter(party -> !party.equals(partyId)).count() == 1;
+    for (Offer offer : offers) {
+      receiveBid(oneOpponent ? offer.getActor() : null, offer.getBid(), utilities[positions.get(offer.getBid())]);
+    }
   }
 
-  @Override
-  public void optIn() {
+  /**
+   * Scores a batch of bids against our profile, on the common pool when there are many of them.
+   *
+   * @param bids The bids to score
+   * @return the utility of every bid, at the same position
+   */
+  private double[] scoreBids(List<Bid> bids) {
+    double[] utilities = new double[bids.size()];
+    IntStream indices = IntStream.range(0, utilities.length);
+    if (utilities.length >= PARALLEL_VOTING) {
+      indices = indices.parallel();
+    }
+    indices.forEach(i -> utilities[i] = getUtility(bids.get(i)));
+    return utilities;
+  }
 
+  /**
+   * Shares out the vote values over the good bids, in proportion to how much each beats the threshold. Every vote gets
+   * at least 1 and the values add up to exactly {@link #VOTE_VALUE_TOTAL}, the remainders of the proportional shares
+   * go to the largest of them. When there are more good bids than values only the best bids get a vote.
+   */
+  private VotesWithValue votesWithValue(List<Bid> bids, double[] utilities, List<Integer> good, double threshold,
+                                        int min, int max) {
+    if (good.isEmpty()) {
+      return new VotesWithValue(partyId, Collections.emptySet());
+    }
+    good.sort((a, b) -> Double.compare(utilities[b], utilities[a]));
+    List<Integer> voted = good.subList(0, Math.min(good.size(), VOTE_VALUE_TOTAL));
+    int[] values = new int[voted.size()];
+    double[] remainders = new double[voted.size()];
+    double surplus = 0;
+    for (int i : voted) {
+      surplus += utilities[i] - threshold;
+    }
+    int left = VOTE_VALUE_TOTAL - voted.size();
+    int given = 0;
+    for (int n = 0; n < values.length; n++) {
+      //Without any surplus all bids are equally good.
+      double share = surplus > 0 ? left * (utilities[voted.get(n)] - threshold) / surplus : (double) left / values.length;
+      values[n] = 1 + (int) share;
+      remainders[n] = share - (int) share;
+      given += (int) share;
+    }
+    Integer[] order = new Integer[values.length];
+    for (int n = 0; n < order.length; n++) {
+      order[n] = n;
+    }
+    Arrays.sort(order, (a, b) -> Double.compare(remainders[b], remainders[a]));
+    for (int n = 0; n < left - given; n++) {
+      values[order[n]]++;
+    }
+    Set<VoteWithValue> votes = new HashSet<>();
+    for (int n = 0; n < values.length; n++) {
+      votes.add(new VoteWithValue(partyId, bids.get(voted.get(n)), min, max, values[n]));
+    }
+    return new VotesWithValue(partyId, votes);
   }
 
+  /**
+   * Repeats the votes of the last voting round, our vote can only be extended when opting in.
+   *
+   * @throws IOException
+   */
   @Override
-  public void optInWithValue() {
+  public void optIn() throws IOException {
+    if (lastVotes != null) {
+      getConnection().send(lastVotes);
+    }
+  }
 
+  /**
+   * Repeats the votes with value of the last voting round.
+   *
+   * @throws IOException
+   */
+  @Override
+  public void optInWithValue() throws IOException {
+    if (lastVotesWithValue != null) {
+      getConnection().send(lastVotesWithValue);
+    }
   }
 
+
+  /**
+   * Holds the pool bid spaces are sorted on, created when the first session sorts one.
+   */
+  private static class InitPool {
+    static final AtomicInteger THREADS = new AtomicInteger();
+    static final ForkJoinPool POOL = new ForkJoinPool(MAX_INIT_THREADS, pool -> {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+      thread.setName("group76-init-" + THREADS.getAndIncrement());
+      return thread;
+    }, null, false);
+  }
 }
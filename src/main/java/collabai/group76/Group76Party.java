@@ -1,7 +1,13 @@
 package collabai.group76;
 
+import collabai.group76.host.Mailbox;
+import collabai.group76.host.SessionHost;
+import collabai.group76.journal.Journal;
+import collabai.group76.journal.JournalingConnection;
+import collabai.group76.util.Clock;
 import geniusweb.actions.Action;
 import geniusweb.actions.Offer;
+import geniusweb.connection.ConnectionEnd;
 import geniusweb.inform.ActionDone;
 import geniusweb.inform.Finished;
 import geniusweb.inform.Inform;
@@ -12,58 +18,231 @@ import geniusweb.inform.Voting;
 import geniusweb.inform.YourTurn;
 import geniusweb.party.Capabilities;
 import geniusweb.party.DefaultParty;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
 import java.util.logging.Level;
 import tudelft.utilities.logging.Reporter;
 
 
+/**
+ * The party run by GeniusWeb. Informs are handled on the thread delivering them, unless a {@link SessionHost} is given
+ * (or configured for the JVM), in which case they are queued in this party's mailbox and handled in order on the
+ * host's executor. When the journalDir parameter is set every inform received and action sent is recorded in a
+ * {@link Journal} in that directory. If handling an inform fails the party logs the failure and leaves the session
+ * by closing its connection.
+ */
 public class Group76Party extends DefaultParty {
 
+  private static final int DEFAULT_JOURNAL_BUFFER_KB = 1024;
+  private static final int DEFAULT_JOURNAL_FILE_MB = 64;
+  private static final int DEFAULT_JOURNAL_FILES = 8;
+
+  //Every party has its own helper, so parties in the same JVM can negotiate in parallel.
+  private final Group76HelperDelegator delegator = new Group76HelperDelegator();
+  private final SessionHost host;
+  //Null when informs are handled inline.
+  private final Mailbox mailbox;
+  private final Clock clock;
+  //Null when the session is not journaled.
+  private Journal journal;
+  //Set once handling an inform failed, the informs still queued are then dropped.
+  private volatile boolean failed;
+
   public Group76Party() {
+    this.host = SessionHost.shared();
+    this.mailbox = host == null ? null : host.openMailbox(this::fail);
+    this.clock = Clock.SYSTEM;
   }
 
   public Group76Party(Reporter reporter) {
+    this(reporter, SessionHost.shared());
+  }
+
+  /**
+   * @param reporter The logger of the party
+   * @param host     The host to handle the informs on, null to handle them inline
+   */
+  public Group76Party(Reporter reporter, SessionHost host) {
+    this(reporter, host, Clock.SYSTEM);
+  }
+
+  /**
+   * @param reporter The logger of the party
+   * @param host     The host to handle the informs on, null to handle them inline
+   * @param clock    The clock the decisions of the session are based on, to replay a recorded session
+   */
+  public Group76Party(Reporter reporter, SessionHost host, Clock clock) {
     super(reporter);
+    this.host = host;
+    this.mailbox = host == null ? null : host.openMailbox(this::fail);
+    this.clock = clock;
   }
 
   @Override
   public void notifyChange(Inform info) {
+    if (mailbox == null) {
+      handle(info);
+      return;
+    }
+    try {
+      mailbox.submit(() -> handle(info));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while queueing info", e);
+    }
+  }
+
+  /**
+   * @return the mailbox of this party, null if informs are handled inline
+   */
+  public Mailbox getMailbox() {
+    return mailbox;
+  }
+
+  /**
+   * Leaves the session after handling an inform failed, in the same way whether informs are handled inline or on a
+   * host: the failure is logged, the session is ended and the connection closed, so the protocol sees us leave
+   * instead of waiting for an action that never comes.
+   *
+   * @param e The failure
+   */
+  private void fail(Throwable e) {
+    if (failed) {
+      return;
+    }
+    failed = true;
+    getReporter().log(Level.SEVERE, "Failed to handle info, leaving the session", e);
+    leave();
+  }
+
+  /**
+   * Ends the session: releases the helper, the journal and the mailbox and closes the connection.
+   */
+  private void leave() {
+    delegator.terminate();
+    closeJournal();
+    super.terminate();
+    if (mailbox != null) {
+      host.closeMailbox(mailbox);
+    }
+  }
+
+  private void handle(Inform info) {
+    if (failed) {
+      return;
+    }
     try {
+      if (info instanceof Settings) {
+        info = openJournal((Settings) info);
+      }
+      record(info);
       if (info instanceof Settings) {
         Settings settings = (Settings) info;
-        Group76HelperDelegator.init(settings, getReporter(), getConnection());
+        delegator.init(settings, getReporter(), journaled(getConnection()), clock);
+        if (mailbox != null) {
+          mailbox.setMetrics(delegator.getMetrics());
+        }
       } else if (info instanceof ActionDone) {
         Action action = ((ActionDone) info).getAction();
         if (action instanceof Offer) {
-          Group76HelperDelegator.setLastBid(action);
+          delegator.setLastBid(action);
         }
       } else if (info instanceof YourTurn) {
-        Group76HelperDelegator.myTurn();
-        Group76HelperDelegator.advanceProgress(info);
+        delegator.myTurn();
+        delegator.advanceProgress(info);
       } else if (info instanceof Finished) {
         getReporter().log(Level.INFO, "Final outcome: " + info);
-        Group76HelperDelegator.terminate();
-        super.terminate();
+        delegator.finished((Finished) info);
+        leave();
       } else if (info instanceof Voting) {
-        Group76HelperDelegator.voting((Voting) info);
+        delegator.voting((Voting) info);
       } else if (info instanceof OptIn) {
         // just repeat our last vote.
-        Group76HelperDelegator.optIn();
+        delegator.optIn();
+        delegator.advanceProgress(info);
       } else if (info instanceof OptInWithValue) {
-        Group76HelperDelegator.optInWithValue();
+        delegator.optInWithValue();
+        delegator.advanceProgress(info);
       }
     } catch (Exception e) {
-      throw new RuntimeException("Failed to handle info", e);
+      fail(e);
+      //Inline the caller sees the failure as well, on a host nobody is waiting for it.
+      if (mailbox == null) {
+        throw new RuntimeException("Failed to handle info", e);
+      }
+    }
+  }
+
+  /**
+   * Opens the journal of the session if the journalDir parameter is set. The journal is named after our party, the
+   * time the session started and a random suffix, so sessions sharing the directory do not mix even when they start
+   * in the same millisecond. A journaled session without a seed parameter gets a random one, so the journal holds
+   * everything needed to replay it.
+   *
+   * @return the settings to use, with the seed added when it was missing
+   */
+  private Settings openJournal(Settings settings) {
+    Object dir = settings.getParameters().get("journalDir");
+    if (!(dir instanceof String) || journal != null) {
+      return settings;
+    }
+    if (!settings.getParameters().containsKey("seed")) {
+      settings = new Settings(settings.getID(), settings.getProfile(), settings.getProtocol(), settings.getProgress(),
+            settings.getParameters().with("seed", new SplittableRandom().nextLong()));
+    }
+    Object val = settings.getParameters().get("journalBufferKb");
+    int bufferBytes = ((val instanceof Integer) ? (Integer) val : DEFAULT_JOURNAL_BUFFER_KB) << 10;
+    val = settings.getParameters().get("journalFileMb");
+    long maxFileBytes = ((val instanceof Integer) ? (Integer) val : DEFAULT_JOURNAL_FILE_MB) * (1L << 20);
+    val = settings.getParameters().get("journalFiles");
+    int maxFiles = (val instanceof Integer) ? (Integer) val : DEFAULT_JOURNAL_FILES;
+    String name = String.format("%s-%d-%08x", settings.getID().getName(), System.currentTimeMillis(),
+          new SplittableRandom().nextInt());
+    try {
+      journal = new Journal(Paths.get((String) dir), name, bufferBytes, maxFileBytes, maxFiles);
+      getReporter().log(Level.INFO, "Journaling session to " + dir + " as " + name);
+    } catch (IOException e) {
+      getReporter().log(Level.WARNING, "Failed to open journal in " + dir, e);
+    }
+    return settings;
+  }
+
+  private void record(Inform info) {
+    if (journal != null) {
+      double utility = info instanceof ActionDone
+            ? JournalingConnection.utilityOf(((ActionDone) info).getAction(), delegator::getUtility) : Double.NaN;
+      journal.recordInform(info, utility);
+    }
+  }
+
+  /**
+   * @return the connection, recording the actions sent on it when the session is journaled
+   */
+  private ConnectionEnd<Inform, Action> journaled(ConnectionEnd<Inform, Action> connection) {
+    return journal == null ? connection : new JournalingConnection(connection, journal, delegator::getUtility);
+  }
+
+  private void closeJournal() {
+    if (journal == null) {
+      return;
+    }
+    journal.close();
+    if (journal.getDropped() > 0 || journal.getError() != null) {
+      getReporter().log(Level.WARNING, "Journal dropped " + journal.getDropped() + " of "
+            + (journal.getEvents() + journal.getDropped()) + " events", journal.getError());
     }
+    journal = null;
   }
 
   @Override
   public Capabilities getCapabilities() {
-    return Group76HelperDelegator.getCapabilities();
+    return delegator.getCapabilities();
   }
 
   @Override
   public String getDescription() {
-    return Group76HelperDelegator.getDescription();
+    return delegator.getDescription();
   }
 
 
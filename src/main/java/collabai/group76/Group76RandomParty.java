@@ -1,5 +1,12 @@
 package collabai.group76;
 
+import collabai.group76.metrics.MetricsSink;
+import collabai.group76.metrics.NoopMetricsSink;
+import collabai.group76.util.AcceptableBids;
+import collabai.group76.util.BidCodec;
+import collabai.group76.util.Clock;
+import collabai.group76.util.LinearAdditiveEvaluator;
+import collabai.group76.util.PartialBidCodec;
 import geniusweb.actions.Accept;
 import geniusweb.actions.Action;
 import geniusweb.actions.LearningDone;
@@ -9,8 +16,8 @@ import geniusweb.actions.Vote;
 import geniusweb.actions.VoteWithValue;
 import geniusweb.actions.Votes;
 import geniusweb.actions.VotesWithValue;
-import geniusweb.bidspace.AllPartialBidsList;
 import geniusweb.connection.ConnectionEnd;
+import geniusweb.inform.Finished;
 import geniusweb.inform.Inform;
 import geniusweb.inform.OptIn;
 import geniusweb.inform.OptInWithValue;
@@ -21,6 +28,7 @@ import geniusweb.issuevalue.Bid;
 import geniusweb.party.Capabilities;
 import geniusweb.profile.PartialOrdering;
 import geniusweb.profile.Profile;
+import geniusweb.profile.utilityspace.LinearAdditive;
 import geniusweb.profile.utilityspace.UtilitySpace;
 import geniusweb.profileconnection.ProfileConnectionFactory;
 import geniusweb.profileconnection.ProfileInterface;
@@ -28,7 +36,6 @@ import geniusweb.progress.Progress;
 import geniusweb.progress.ProgressRounds;
 import java.io.IOException;
 import java.math.BigDecimal;
-import java.math.BigInteger;
 import java.util.*;
 import java.util.stream.Collectors;
 import javax.websocket.DeploymentException;
@@ -41,8 +48,15 @@ import tudelft.utilities.logging.Reporter;
 
 public class Group76RandomParty implements Group76Helper {
 
-  private final Random random = new Random();
+  //Bids of a utility space profile above this utility are acceptable.
+  private static final double ACCEPTABLE_UTILITY = 0.6;
+  //Most bids tested or kept when the acceptable bids are indexed, larger domains are sampled.
+  private static final int INDEX_LIMIT = 500000;
+  //Seeded from the seed parameter when given.
+  private SplittableRandom random;
   protected ProfileInterface profileInterface = null;
+  //Fetched once in init.
+  private Profile profile;
   private Bid lastReceivedBid = null;
   private PartyId partyId;
   private Progress progress;
@@ -52,6 +66,10 @@ public class Group76RandomParty implements Group76Helper {
   private String protocol;
   private Reporter reporter;
   private ConnectionEnd<Inform, Action> connection;
+  //Index of all partial and complete bids, built in init.
+  private PartialBidCodec codec;
+  //The bids we accept, built in init so offers are drawn from them directly.
+  private AcceptableBids acceptableBids;
 
   @Override
   public void init(Settings settings, Reporter reporter, ConnectionEnd<Inform, Action> connection) throws IOException,
@@ -62,10 +80,15 @@ public class Group76RandomParty implements Group76Helper {
     this.protocol = settings.getProtocol().getURI().getPath();
     this.reporter = reporter;
     this.connection = connection;
+    Object val = settings.getParameters().get("seed");
+    this.random = (val instanceof Number) ? new SplittableRandom(((Number) val).longValue()) : new SplittableRandom();
     if("Learn".equals(protocol)) {
       getConnection().send(new LearningDone(partyId));
     } else {
       this.profileInterface = ProfileConnectionFactory.create(settings.getProfile().getURI(), getReporter());
+      this.profile = profileInterface.getProfile();
+      this.codec = new PartialBidCodec(new BidCodec(profile.getDomain()));
+      this.acceptableBids = indexAcceptableBids();
     }
   }
 
@@ -75,30 +98,36 @@ public class Group76RandomParty implements Group76Helper {
     if((protocol.equals("SAOP") || protocol.equals("SHAOP")) && isAcceptable(lastReceivedBid)) {
       action = new Accept(partyId, lastReceivedBid);
     } else {
-      AllPartialBidsList bidSpace = new AllPartialBidsList(profileInterface.getProfile().getDomain());
-      Bid bid = null;
-      for(int attempt = 0; attempt <20 && !isAcceptable(bid); attempt++) {
-        long i = random.nextInt();
-        bid = bidSpace.get(BigInteger.valueOf(i));
+      Bid bid = acceptableBids.drawPreferred(random);
+      if (bid == null) {
+        //Nothing is acceptable, any bid is as good as another.
+        bid = codec.decode(random.nextLong(codec.size()));
       }
       action = new Offer(partyId, bid);
     }
     getConnection().send(action);
   }
 
+  @Override
+  public void setClock(Clock clock) {
+    //Random bidding does not depend on time.
+  }
+
+  @Override
+  public double getUtility(Bid bid) {
+    if (profile instanceof UtilitySpace) {
+      return ((UtilitySpace) profile).getUtility(bid).doubleValue();
+    }
+    return Double.NaN;
+  }
+
   @Override
   public boolean isAcceptable(Bid bid) {
     // First round: lastReceivedBid == null
     if (bid == null)
       return false;
-    Profile profile;
-    try {
-      profile = profileInterface.getProfile();
-    } catch (IOException e) {
-      throw new IllegalStateException(e);
-    }
     if (profile instanceof UtilitySpace)
-      return ((UtilitySpace) profile).getUtility(bid).doubleValue() > 0.6;
+      return ((UtilitySpace) profile).getUtility(bid).doubleValue() > ACCEPTABLE_UTILITY;
     if (profile instanceof PartialOrdering) {
       return ((PartialOrdering) profile).isPreferredOrEqual(bid,
             profile.getReservationBid());
@@ -106,6 +135,46 @@ public class Group76RandomParty implements Group76Helper {
     return false;
   }
 
+  /**
+   * Indexes the partial and complete bids we accept. Linear additive profiles are scored on the weighted utility of
+   * the issues a bid has. A partial ordering is ranked by comparing every bid with its reservation bid both ways, so
+   * the bids strictly preferred over it come first and are the ones we offer. Without a reservation bid every bid of a
+   * partial ordering is better than no agreement. Other profiles are tested bid by bid.
+   *
+   * @return the index of acceptable bids
+   */
+  private AcceptableBids indexAcceptableBids() {
+    if (profile instanceof LinearAdditive) {
+      LinearAdditiveEvaluator evaluator = new LinearAdditiveEvaluator(codec.getCodec(), (LinearAdditive) profile);
+      int issues = codec.getCodec().issueCount();
+      return AcceptableBids.scan(codec, bidId -> {
+        double utility = 0;
+        for (int i = 0; i < issues; i++) {
+          int ordinal = codec.ordinal(bidId, i);
+          if (ordinal >= 0) {
+            utility += evaluator.contribution(i, ordinal);
+          }
+        }
+        return utility > ACCEPTABLE_UTILITY;
+      }, INDEX_LIMIT, random);
+    }
+    if (profile instanceof PartialOrdering) {
+      PartialOrdering ordering = (PartialOrdering) profile;
+      Bid reservation = profile.getReservationBid();
+      if (reservation == null) {
+        return AcceptableBids.scan(codec, bidId -> true, INDEX_LIMIT, random);
+      }
+      return AcceptableBids.rank(codec, bidId -> {
+        Bid bid = codec.decode(bidId);
+        if (!ordering.isPreferredOrEqual(bid, reservation)) {
+          return AcceptableBids.UNACCEPTABLE;
+        }
+        return ordering.isPreferredOrEqual(reservation, bid) ? AcceptableBids.EQUAL : AcceptableBids.PREFERRED;
+      }, INDEX_LIMIT, random);
+    }
+    return AcceptableBids.scan(codec, bidId -> isAcceptable(codec.decode(bidId)), INDEX_LIMIT, random);
+  }
+
   @Override
   public void setLastBid(Action action) {
     this.lastReceivedBid = ((Offer) action).getBid();
@@ -172,6 +241,11 @@ public class Group76RandomParty implements Group76Helper {
     return reporter;
   }
 
+  @Override
+  public MetricsSink getMetrics() {
+    return NoopMetricsSink.INSTANCE;
+  }
+
   @Override
   public ConnectionEnd<Inform, Action> getConnection() {
     return connection;
@@ -189,6 +263,11 @@ public class Group76RandomParty implements Group76Helper {
            "with the issue value of the randomly selected bid from the history of the offered bids.";
   }
 
+  @Override
+  public void finished(Finished finished) {
+
+  }
+
   @Override
   public void terminate() {
     if(this.profileInterface != null) {
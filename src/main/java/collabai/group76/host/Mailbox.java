@@ -0,0 +1,160 @@
+package collabai.group76.host;
+
+import collabai.group76.metrics.Histogram;
+import collabai.group76.metrics.MetricsSink;
+import collabai.group76.metrics.MetricsSink.Counter;
+import collabai.group76.metrics.MetricsSink.Timer;
+import collabai.group76.metrics.NoopMetricsSink;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Runs the tasks of one session one at a time and in submission order on a shared executor, so a session never needs
+ * a thread of its own while it waits for its next inform. The queue is bounded: when it is full, submit blocks the
+ * caller until there is room, which pushes back on whoever delivers the informs. How long tasks wait and how often the
+ * queue was full are kept as back-pressure metrics, and also passed to the {@link MetricsSink} of the session, which
+ * exports them over JMX with the other metrics of the session.
+ */
+public class Mailbox {
+
+  //Tasks run before the thread is handed back to the executor, so busy sessions cannot starve the others.
+  private static final int BATCH = 16;
+
+  private final String name;
+  private final Executor executor;
+  private final BlockingQueue<Task> queue;
+  private final Consumer<Throwable> errorHandler;
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private final Histogram waitTimes = new Histogram();
+  private final AtomicInteger maxDepth = new AtomicInteger();
+  private final LongAdder blocked = new LongAdder();
+  private final LongAdder processed = new LongAdder();
+  private volatile MetricsSink metrics = NoopMetricsSink.INSTANCE;
+
+  /**
+   * @param name         The name of the mailbox, used in the metrics
+   * @param executor     The executor running the tasks
+   * @param capacity     The most tasks that can wait
+   * @param errorHandler Receives the exceptions thrown by tasks
+   */
+  public Mailbox(String name, Executor executor, int capacity, Consumer<Throwable> errorHandler) {
+    this.name = name;
+    this.executor = executor;
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.errorHandler = errorHandler;
+  }
+
+  /**
+   * Queues a task after all tasks submitted before it, blocking while the mailbox is full.
+   *
+   * @param task The task
+   * @throws InterruptedException if interrupted while waiting for room
+   */
+  public void submit(Runnable task) throws InterruptedException {
+    Task queued = new Task(task, System.nanoTime());
+    if (!queue.offer(queued)) {
+      blocked.increment();
+      metrics.increment(Counter.MAILBOX_BLOCKED);
+      queue.put(queued);
+    }
+    int depth = queue.size();
+    maxDepth.accumulateAndGet(depth, Math::max);
+    metrics.recordMailboxDepth(depth);
+    schedule();
+  }
+
+  private void schedule() {
+    if (scheduled.compareAndSet(false, true)) {
+      executor.execute(this::drain);
+    }
+  }
+
+  private void drain() {
+    try {
+      Task task;
+      for (int n = 0; n < BATCH && (task = queue.poll()) != null; n++) {
+        long waited = System.nanoTime() - task.submitted;
+        waitTimes.record(waited);
+        metrics.recordLatency(Timer.MAILBOX_WAIT, waited);
+        try {
+          task.runnable.run();
+        } catch (Throwable e) {
+          errorHandler.accept(e);
+        }
+        processed.increment();
+      }
+    } finally {
+      scheduled.set(false);
+      //Tasks submitted while we were finishing saw us scheduled, so pick them up here.
+      if (!queue.isEmpty()) {
+        schedule();
+      }
+    }
+  }
+
+  /**
+   * Passes the back-pressure metrics to the sink of the session as well, from now on.
+   *
+   * @param metrics The sink of the session
+   */
+  public void setMetrics(MetricsSink metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * @return the name of the mailbox
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return the number of tasks waiting
+   */
+  public int getDepth() {
+    return queue.size();
+  }
+
+  /**
+   * @return the most tasks that were waiting at once
+   */
+  public int getMaxDepth() {
+    return maxDepth.get();
+  }
+
+  /**
+   * @return the number of submits that had to wait for room
+   */
+  public long getBlocked() {
+    return blocked.sum();
+  }
+
+  /**
+   * @return the number of tasks run
+   */
+  public long getProcessed() {
+    return processed.sum();
+  }
+
+  /**
+   * @return the nanoseconds tasks waited between submission and start
+   */
+  public Histogram getWaitTimes() {
+    return waitTimes;
+  }
+
+  private static class Task {
+    final Runnable runnable;
+    final long submitted;
+
+    Task(Runnable runnable, long submitted) {
+      this.runnable = runnable;
+      this.submitted = submitted;
+    }
+  }
+}
@@ -0,0 +1,146 @@
+package collabai.group76.host;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Hosts the sessions of many parties on one executor. Every party gets a {@link Mailbox} that runs its inform
+ * handling serially, while the sessions share the executor's threads. The executor is pluggable: a fixed pool bounds
+ * the threads on any JVM, and virtual threads are used where the JVM has them (Java 21 and later) while the agent is
+ * still built for Java 8.
+ *
+ * <p>The shared host is configured with system properties: group76.host is "inline" (the default, informs are
+ * handled on the thread delivering them and no host is used), "virtual" or "pool"; group76.host.threads sets the pool
+ * size and group76.host.mailboxCapacity the size of every mailbox.
+ */
+public class SessionHost implements AutoCloseable {
+
+  private static final int MAILBOX_CAPACITY = 1024;
+  private static volatile SessionHost shared;
+
+  private final ExecutorService executor;
+  private final int mailboxCapacity;
+  private final Collection<Mailbox> mailboxes = Collections.newSetFromMap(new ConcurrentHashMap<>());
+  private final AtomicLong opened = new AtomicLong();
+
+  /**
+   * @param executor        The executor running the sessions
+   * @param mailboxCapacity The most informs that can wait per session
+   */
+  public SessionHost(ExecutorService executor, int mailboxCapacity) {
+    this.executor = executor;
+    this.mailboxCapacity = mailboxCapacity;
+  }
+
+  /**
+   * @param threads         The number of threads
+   * @param mailboxCapacity The most informs that can wait per session
+   * @return a host running the sessions on a fixed pool of threads
+   */
+  public static SessionHost fixed(int threads, int mailboxCapacity) {
+    return new SessionHost(Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "group76-session");
+      thread.setDaemon(true);
+      return thread;
+    }), mailboxCapacity);
+  }
+
+  /**
+   * @param mailboxCapacity The most informs that can wait per session
+   * @return a host running every task on its own virtual thread
+   * @throws UnsupportedOperationException if the JVM has no virtual threads
+   */
+  public static SessionHost virtual(int mailboxCapacity) {
+    return new SessionHost(newVirtualThreadExecutor(), mailboxCapacity);
+  }
+
+  /**
+   * Creates Executors.newVirtualThreadPerTaskExecutor() through reflection, so the agent still runs on JVMs without
+   * virtual threads.
+   *
+   * @return the executor
+   * @throws UnsupportedOperationException if the JVM has no virtual threads
+   */
+  public static ExecutorService newVirtualThreadExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      throw new UnsupportedOperationException("Virtual threads need Java 21 or later", e);
+    }
+  }
+
+  /**
+   * @return the host configured by the system properties, null if informs are handled inline
+   * @throws IllegalArgumentException if group76.host has an unknown value
+   */
+  public static SessionHost shared() {
+    SessionHost host = shared;
+    if (host == null) {
+      synchronized (SessionHost.class) {
+        host = shared;
+        if (host == null) {
+          host = fromSystemProperties();
+          shared = host;
+        }
+      }
+    }
+    return host;
+  }
+
+  private static SessionHost fromSystemProperties() {
+    String type = System.getProperty("group76.host", "inline");
+    int capacity = Integer.getInteger("group76.host.mailboxCapacity", MAILBOX_CAPACITY);
+    switch (type) {
+      case "inline":
+        return null;
+      case "virtual":
+        return virtual(capacity);
+      case "pool":
+        return fixed(Integer.getInteger("group76.host.threads", Runtime.getRuntime().availableProcessors()),
+              capacity);
+      default:
+        throw new IllegalArgumentException("Unknown group76.host: " + type);
+    }
+  }
+
+  /**
+   * Opens the mailbox of a new session.
+   *
+   * @param errorHandler Receives the exceptions thrown while handling the session's informs
+   * @return the mailbox
+   */
+  public Mailbox openMailbox(Consumer<Throwable> errorHandler) {
+    Mailbox mailbox = new Mailbox("session-" + opened.incrementAndGet(), executor, mailboxCapacity, errorHandler);
+    mailboxes.add(mailbox);
+    return mailbox;
+  }
+
+  /**
+   * Stops reporting the metrics of a session that ended.
+   *
+   * @param mailbox The mailbox of the session
+   */
+  public void closeMailbox(Mailbox mailbox) {
+    mailboxes.remove(mailbox);
+  }
+
+  /**
+   * @return the mailboxes of the running sessions, for their back-pressure metrics
+   */
+  public Collection<Mailbox> getMailboxes() {
+    return Collections.unmodifiableCollection(mailboxes);
+  }
+
+  /**
+   * Stops the executor once the queued informs are handled.
+   */
+  @Override
+  public void close() {
+    executor.shutdown();
+  }
+}
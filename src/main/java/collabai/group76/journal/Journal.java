@@ -0,0 +1,347 @@
+package collabai.group76.journal;
+
+import geniusweb.actions.Action;
+import geniusweb.inform.Inform;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Append only journal of the informs a party receives and the actions it sends, for reconstructing and replaying a
+ * session afterwards. Events are encoded by {@link JournalCodec} into one of two preallocated direct buffers, and a
+ * background thread writes the other one to disk, so the negotiation thread never waits on I/O or allocates. When the
+ * flusher is still busy with the other buffer the event is dropped and counted rather than blocking the caller. One
+ * flusher thread serves every open journal of the JVM, so many journaled sessions do not each hold a thread, and the
+ * buffer size is configurable so they need not each hold megabytes either.
+ * <p>
+ * Events go to {@code <name>-<sequence>.journal} files in the journal directory. A file is rotated when the next batch
+ * would make it larger than the maximum file size, and the oldest file of this journal is deleted when it has more
+ * files than the maximum. Files of other journals in the directory are never touched. Every file starts with a magic
+ * number and the format version, followed by records of the form [int length] [byte kind][long nanoTime][long
+ * wallMillis][double utility][payload], where the length counts everything after it.
+ */
+public class Journal {
+
+  static final int MAGIC = 0x4737364A;
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 8;
+  static final String SUFFIX = ".journal";
+
+  static final byte INFORM = 1;
+  static final byte ACTION = 2;
+
+  private static final int MIN_BUFFER_SIZE = 1 << 12;
+  private static final long FLUSH_INTERVAL_MS = 100;
+  private static final long CLOSE_TIMEOUT_MS = 5000;
+
+  //The open journals, flushed in turn by the shared flusher.
+  private static final Set<Journal> OPEN = ConcurrentHashMap.newKeySet();
+  private static final Object FLUSH_SIGNAL = new Object();
+  //Guarded by FLUSH_SIGNAL. The flusher runs while there are open journals.
+  private static boolean flushRequested;
+  private static Thread flusher;
+
+  private final Path directory;
+  private final String name;
+  private final long maxFileBytes;
+  private final int maxFiles;
+
+  private final Object lock = new Object();
+  //The buffer events are encoded into.
+  private ByteBuffer active;
+  //The empty buffer, null while the flusher owns it.
+  private ByteBuffer spare;
+  //The full buffer handed to the flusher, null when there is none.
+  private ByteBuffer pending;
+  private boolean closed;
+  private long events;
+
+  private final LongAdder dropped = new LongAdder();
+  private final CountDownLatch finished = new CountDownLatch(1);
+  //Only used by the flusher after the first file is opened.
+  private final Deque<Path> files = new ArrayDeque<>();
+  private FileChannel channel;
+  private long fileBytes;
+  private int sequence;
+  private volatile IOException error;
+
+  /**
+   * Opens the first journal file and hands the journal to the flusher.
+   *
+   * @param directory    The directory to write the journal files to
+   * @param name         The name the journal files start with, unique among the journals of the directory
+   * @param bufferBytes  The size of each of the two buffers, at least 4 KiB, which also bounds the size of an event
+   * @param maxFileBytes The size at which a file is rotated, at least the buffer size
+   * @param maxFiles     The number of files of this journal to keep, at least 1
+   * @throws IOException if the first file cannot be created, for instance as a journal of that name exists
+   */
+  public Journal(Path directory, String name, int bufferBytes, long maxFileBytes, int maxFiles) throws IOException {
+    int bufferSize = Math.max(bufferBytes, MIN_BUFFER_SIZE);
+    this.directory = directory;
+    this.name = name;
+    this.maxFileBytes = Math.max(maxFileBytes, bufferSize + HEADER_SIZE);
+    this.maxFiles = Math.max(1, maxFiles);
+    this.active = ByteBuffer.allocateDirect(bufferSize);
+    this.spare = ByteBuffer.allocateDirect(bufferSize);
+    Files.createDirectories(directory);
+    rotate();
+    synchronized (FLUSH_SIGNAL) {
+      OPEN.add(this);
+      if (flusher == null) {
+        flusher = new Thread(Journal::flushAll, "group76-journal");
+        flusher.setDaemon(true);
+        flusher.start();
+      }
+    }
+  }
+
+  /**
+   * @param inform  The inform received
+   * @param utility Our utility of the bid in the inform, NaN if there is none
+   */
+  public void recordInform(Inform inform, double utility) {
+    record(INFORM, inform, null, utility);
+  }
+
+  /**
+   * @param action  The action sent
+   * @param utility Our utility of the bid in the action, NaN if there is none
+   */
+  public void recordAction(Action action, double utility) {
+    record(ACTION, null, action, utility);
+  }
+
+  private void record(byte kind, Inform inform, Action action, double utility) {
+    long nanoTime = System.nanoTime();
+    long wallMillis = System.currentTimeMillis();
+    synchronized (lock) {
+      if (closed) {
+        dropped.increment();
+        return;
+      }
+      if (!append(kind, inform, action, nanoTime, wallMillis, utility)) {
+        //Hand the full buffer to the flusher if it is free and try once more on the empty one.
+        if (pending != null || active.position() == 0) {
+          dropped.increment();
+          return;
+        }
+        handOff();
+        requestFlush();
+        if (!append(kind, inform, action, nanoTime, wallMillis, utility)) {
+          dropped.increment();
+          return;
+        }
+      }
+      events++;
+    }
+  }
+
+  /**
+   * Makes the active buffer pending and the spare one active. Called holding the lock while nothing is pending.
+   */
+  private void handOff() {
+    pending = active;
+    active = spare;
+    spare = null;
+  }
+
+  /**
+   * Encodes a record into the active buffer.
+   *
+   * @return false, leaving the buffer as it was, if the record does not fit
+   */
+  private boolean append(byte kind, Inform inform, Action action, long nanoTime, long wallMillis, double utility) {
+    int start = active.position();
+    try {
+      active.putInt(0);
+      active.put(kind);
+      active.putLong(nanoTime);
+      active.putLong(wallMillis);
+      active.putDouble(utility);
+      if (inform != null) {
+        JournalCodec.putInform(active, inform);
+      } else {
+        JournalCodec.putAction(active, action);
+      }
+      active.putInt(start, active.position() - start - Integer.BYTES);
+      return true;
+    } catch (BufferOverflowException e) {
+      active.position(start);
+      return false;
+    }
+  }
+
+  /**
+   * @return the number of events recorded
+   */
+  public long getEvents() {
+    synchronized (lock) {
+      return events;
+    }
+  }
+
+  /**
+   * @return the number of events dropped because the buffers were full or the journal closed
+   */
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  /**
+   * @return the error that stopped the journal from writing, null if there was none
+   */
+  public IOException getError() {
+    return error;
+  }
+
+  /**
+   * Writes the events still buffered, forces them to disk and closes the file, waiting for the flusher to finish.
+   */
+  public void close() {
+    synchronized (lock) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    requestFlush();
+    try {
+      finished.await(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Wakes the flusher before its interval is over.
+   */
+  private static void requestFlush() {
+    synchronized (FLUSH_SIGNAL) {
+      flushRequested = true;
+      FLUSH_SIGNAL.notifyAll();
+    }
+  }
+
+  /**
+   * The loop of the shared flusher: every interval, or sooner when asked, it flushes each open journal. It stops when
+   * no journal is open, the next journal opened starts a new one.
+   */
+  private static void flushAll() {
+    while (true) {
+      synchronized (FLUSH_SIGNAL) {
+        if (OPEN.isEmpty()) {
+          flusher = null;
+          return;
+        }
+        if (!flushRequested) {
+          try {
+            FLUSH_SIGNAL.wait(FLUSH_INTERVAL_MS);
+          } catch (InterruptedException e) {
+            //Keep flushing while journals are open.
+          }
+        }
+        flushRequested = false;
+      }
+      for (Journal journal : OPEN) {
+        journal.flush();
+      }
+    }
+  }
+
+  /**
+   * Writes the pending buffer, or the active one when nothing is pending. Once closed, writes everything left, closes
+   * the file and leaves the open journals.
+   */
+  private void flush() {
+    while (true) {
+      ByteBuffer batch;
+      boolean closing;
+      synchronized (lock) {
+        if (pending == null && active.position() > 0) {
+          handOff();
+        }
+        batch = pending;
+        closing = closed;
+      }
+      if (batch == null) {
+        if (closing) {
+          finish();
+        }
+        return;
+      }
+      write(batch);
+      synchronized (lock) {
+        batch.clear();
+        spare = batch;
+        pending = null;
+      }
+      if (!closing) {
+        return;
+      }
+    }
+  }
+
+  private void finish() {
+    try {
+      channel.force(false);
+      channel.close();
+    } catch (IOException e) {
+      error = e;
+    }
+    OPEN.remove(this);
+    finished.countDown();
+  }
+
+  /**
+   * Writes a batch of whole records, rotating first if it does not fit the current file. Once writing failed batches
+   * are discarded, the error is kept for {@link #getError}.
+   */
+  private void write(ByteBuffer batch) {
+    if (error != null) {
+      return;
+    }
+    batch.flip();
+    try {
+      if (fileBytes + batch.remaining() > maxFileBytes) {
+        rotate();
+      }
+      while (batch.hasRemaining()) {
+        fileBytes += channel.write(batch);
+      }
+    } catch (IOException e) {
+      error = e;
+    }
+  }
+
+  /**
+   * Closes the current file, opens the next one and deletes the oldest if there are too many.
+   */
+  private void rotate() throws IOException {
+    if (channel != null) {
+      channel.close();
+    }
+    Path file = directory.resolve(String.format("%s-%06d%s", name, ++sequence, SUFFIX));
+    channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC).putInt(VERSION).flip();
+    while (header.hasRemaining()) {
+      channel.write(header);
+    }
+    fileBytes = HEADER_SIZE;
+    files.addLast(file);
+    while (files.size() > maxFiles) {
+      Files.deleteIfExists(files.removeFirst());
+    }
+  }
+}
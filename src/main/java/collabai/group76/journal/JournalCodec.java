@@ -0,0 +1,418 @@
+package collabai.group76.journal;
+
+import geniusweb.actions.Accept;
+import geniusweb.actions.Action;
+import geniusweb.actions.EndNegotiation;
+import geniusweb.actions.LearningDone;
+import geniusweb.actions.Offer;
+import geniusweb.actions.PartyId;
+import geniusweb.actions.Vote;
+import geniusweb.actions.VoteWithValue;
+import geniusweb.actions.Votes;
+import geniusweb.actions.VotesWithValue;
+import geniusweb.inform.ActionDone;
+import geniusweb.inform.Agreements;
+import geniusweb.inform.Finished;
+import geniusweb.inform.Inform;
+import geniusweb.inform.OptIn;
+import geniusweb.inform.OptInWithValue;
+import geniusweb.inform.Parameters;
+import geniusweb.inform.Settings;
+import geniusweb.inform.Voting;
+import geniusweb.inform.YourTurn;
+import geniusweb.issuevalue.Bid;
+import geniusweb.issuevalue.DiscreteValue;
+import geniusweb.issuevalue.NumberValue;
+import geniusweb.issuevalue.Value;
+import geniusweb.progress.Progress;
+import geniusweb.progress.ProgressRounds;
+import geniusweb.progress.ProgressTime;
+import geniusweb.references.ProfileRef;
+import geniusweb.references.ProtocolRef;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Binary form of the informs and actions of a session, written straight into a {@link ByteBuffer}. Every type starts
+ * with a tag byte. Types we do not know are written as their class name only and read back as null, so a journal can
+ * always be written but only the known types can be replayed. Parameter values other than strings, numbers and
+ * booleans are kept as their string form.
+ */
+final class JournalCodec {
+
+  private static final byte UNKNOWN = 0;
+
+  private static final byte SETTINGS = 1;
+  private static final byte ACTION_DONE = 2;
+  private static final byte YOUR_TURN = 3;
+  private static final byte FINISHED = 4;
+  private static final byte VOTING = 5;
+  private static final byte OPT_IN = 6;
+  private static final byte OPT_IN_WITH_VALUE = 7;
+
+  private static final byte OFFER = 1;
+  private static final byte ACCEPT = 2;
+  private static final byte END_NEGOTIATION = 3;
+  private static final byte LEARNING_DONE = 4;
+  private static final byte VOTES = 5;
+  private static final byte VOTES_WITH_VALUE = 6;
+
+  private static final byte ROUNDS = 1;
+  private static final byte TIME = 2;
+
+  private static final byte DISCRETE = 1;
+  private static final byte NUMBER = 2;
+
+  private static final byte NULL = 0;
+  private static final byte STRING = 1;
+  private static final byte INTEGER = 2;
+  private static final byte LONG = 3;
+  private static final byte DOUBLE = 4;
+  private static final byte BOOLEAN = 5;
+
+  private JournalCodec() {
+  }
+
+  /**
+   * @throws java.nio.BufferOverflowException if the inform does not fit in the buffer
+   */
+  static void putInform(ByteBuffer buffer, Inform inform) {
+    if (inform instanceof Settings) {
+      Settings settings = (Settings) inform;
+      buffer.put(SETTINGS);
+      putParty(buffer, settings.getID());
+      putString(buffer, settings.getProfile().getURI().toString());
+      putString(buffer, settings.getProtocol().getURI().toString());
+      putProgress(buffer, settings.getProgress());
+      putParameters(buffer, settings.getParameters());
+    } else if (inform instanceof ActionDone) {
+      buffer.put(ACTION_DONE);
+      putAction(buffer, ((ActionDone) inform).getAction());
+    } else if (inform instanceof YourTurn) {
+      buffer.put(YOUR_TURN);
+    } else if (inform instanceof Finished) {
+      Map<PartyId, Bid> agreements = ((Finished) inform).getAgreements().getMap();
+      buffer.put(FINISHED);
+      buffer.putInt(agreements.size());
+      for (Map.Entry<PartyId, Bid> agreement : agreements.entrySet()) {
+        putParty(buffer, agreement.getKey());
+        putBid(buffer, agreement.getValue());
+      }
+    } else if (inform instanceof Voting) {
+      Voting voting = (Voting) inform;
+      buffer.put(VOTING);
+      buffer.putInt(voting.getOffers().size());
+      for (Offer offer : voting.getOffers()) {
+        putParty(buffer, offer.getActor());
+        putBid(buffer, offer.getBid());
+      }
+      buffer.putInt(voting.getPowers().size());
+      for (Map.Entry<PartyId, Integer> power : voting.getPowers().entrySet()) {
+        putParty(buffer, power.getKey());
+        buffer.putInt(power.getValue());
+      }
+    } else if (inform instanceof OptIn) {
+      List<Votes> votes = ((OptIn) inform).getVotes();
+      buffer.put(OPT_IN);
+      buffer.putInt(votes.size());
+      for (Votes vote : votes) {
+        putAction(buffer, vote);
+      }
+    } else if (inform instanceof OptInWithValue) {
+      List<VotesWithValue> votes = ((OptInWithValue) inform).getVotes();
+      buffer.put(OPT_IN_WITH_VALUE);
+      buffer.putInt(votes.size());
+      for (VotesWithValue vote : votes) {
+        putAction(buffer, vote);
+      }
+    } else {
+      buffer.put(UNKNOWN);
+      putString(buffer, inform.getClass().getName());
+    }
+  }
+
+  /**
+   * @return the inform, null if it was of a type we do not know
+   */
+  static Inform getInform(ByteBuffer buffer) {
+    byte tag = buffer.get();
+    switch (tag) {
+      case SETTINGS:
+        PartyId party = getParty(buffer);
+        ProfileRef profile = new ProfileRef(URI.create(getString(buffer)));
+        ProtocolRef protocol = new ProtocolRef(URI.create(getString(buffer)));
+        Progress progress = getProgress(buffer);
+        return new Settings(party, profile, protocol, progress, getParameters(buffer));
+      case ACTION_DONE:
+        return new ActionDone(getAction(buffer));
+      case YOUR_TURN:
+        return new YourTurn();
+      case FINISHED:
+        Map<PartyId, Bid> agreements = new HashMap<>();
+        for (int n = buffer.getInt(); n > 0; n--) {
+          agreements.put(getParty(buffer), getBid(buffer));
+        }
+        return new Finished(new Agreements(agreements));
+      case VOTING:
+        List<Offer> offers = new ArrayList<>();
+        for (int n = buffer.getInt(); n > 0; n--) {
+          offers.add(new Offer(getParty(buffer), getBid(buffer)));
+        }
+        Map<PartyId, Integer> powers = new HashMap<>();
+        for (int n = buffer.getInt(); n > 0; n--) {
+          powers.put(getParty(buffer), buffer.getInt());
+        }
+        return new Voting(offers, powers);
+      case OPT_IN:
+        List<Votes> votes = new ArrayList<>();
+        for (int n = buffer.getInt(); n > 0; n--) {
+          votes.add((Votes) getAction(buffer));
+        }
+        return new OptIn(votes);
+      case OPT_IN_WITH_VALUE:
+        List<VotesWithValue> valueVotes = new ArrayList<>();
+        for (int n = buffer.getInt(); n > 0; n--) {
+          valueVotes.add((VotesWithValue) getAction(buffer));
+        }
+        return new OptInWithValue(valueVotes);
+      case UNKNOWN:
+        getString(buffer);
+        return null;
+      default:
+        throw new IllegalArgumentException("Unknown inform tag " + tag);
+    }
+  }
+
+  /**
+   * @throws java.nio.BufferOverflowException if the action does not fit in the buffer
+   */
+  static void putAction(ByteBuffer buffer, Action action) {
+    if (action instanceof Offer) {
+      buffer.put(OFFER);
+      putParty(buffer, action.getActor());
+      putBid(buffer, ((Offer) action).getBid());
+    } else if (action instanceof Accept) {
+      buffer.put(ACCEPT);
+      putParty(buffer, action.getActor());
+      putBid(buffer, ((Accept) action).getBid());
+    } else if (action instanceof EndNegotiation) {
+      buffer.put(END_NEGOTIATION);
+      putParty(buffer, action.getActor());
+    } else if (action instanceof LearningDone) {
+      buffer.put(LEARNING_DONE);
+      putParty(buffer, action.getActor());
+    } else if (action instanceof Votes) {
+      Set<Vote> votes = ((Votes) action).getVotes();
+      buffer.put(VOTES);
+      putParty(buffer, action.getActor());
+      buffer.putInt(votes.size());
+      for (Vote vote : votes) {
+        putBid(buffer, vote.getBid());
+        buffer.putInt(vote.getMinPower());
+        buffer.putInt(vote.getMaxPower());
+      }
+    } else if (action instanceof VotesWithValue) {
+      Set<VoteWithValue> votes = ((VotesWithValue) action).getVotes();
+      buffer.put(VOTES_WITH_VALUE);
+      putParty(buffer, action.getActor());
+      buffer.putInt(votes.size());
+      for (VoteWithValue vote : votes) {
+        putBid(buffer, vote.getBid());
+        buffer.putInt(vote.getMinPower());
+        buffer.putInt(vote.getMaxPower());
+        buffer.putInt(vote.getValue());
+      }
+    } else {
+      buffer.put(UNKNOWN);
+      putString(buffer, action.getClass().getName());
+    }
+  }
+
+  /**
+   * @return the action, null if it was of a type we do not know
+   */
+  static Action getAction(ByteBuffer buffer) {
+    byte tag = buffer.get();
+    switch (tag) {
+      case OFFER:
+        return new Offer(getParty(buffer), getBid(buffer));
+      case ACCEPT:
+        return new Accept(getParty(buffer), getBid(buffer));
+      case END_NEGOTIATION:
+        return new EndNegotiation(getParty(buffer));
+      case LEARNING_DONE:
+        return new LearningDone(getParty(buffer));
+      case VOTES: {
+        PartyId actor = getParty(buffer);
+        Set<Vote> votes = new HashSet<>();
+        for (int n = buffer.getInt(); n > 0; n--) {
+          votes.add(new Vote(actor, getBid(buffer), buffer.getInt(), buffer.getInt()));
+        }
+        return new Votes(actor, votes);
+      }
+      case VOTES_WITH_VALUE: {
+        PartyId actor = getParty(buffer);
+        Set<VoteWithValue> votes = new HashSet<>();
+        for (int n = buffer.getInt(); n > 0; n--) {
+          votes.add(new VoteWithValue(actor, getBid(buffer), buffer.getInt(), buffer.getInt(), buffer.getInt()));
+        }
+        return new VotesWithValue(actor, votes);
+      }
+      case UNKNOWN:
+        getString(buffer);
+        return null;
+      default:
+        throw new IllegalArgumentException("Unknown action tag " + tag);
+    }
+  }
+
+  private static void putProgress(ByteBuffer buffer, Progress progress) {
+    if (progress instanceof ProgressRounds) {
+      ProgressRounds rounds = (ProgressRounds) progress;
+      buffer.put(ROUNDS);
+      buffer.putInt(rounds.getTotalRounds());
+      buffer.putInt(rounds.getCurrentRound());
+      buffer.putLong(rounds.getTerminationTime().getTime());
+    } else {
+      ProgressTime time = (ProgressTime) progress;
+      buffer.put(TIME);
+      buffer.putLong(time.getDuration());
+      buffer.putLong(time.getStart().getTime());
+    }
+  }
+
+  private static Progress getProgress(ByteBuffer buffer) {
+    byte tag = buffer.get();
+    if (tag == ROUNDS) {
+      int total = buffer.getInt();
+      int current = buffer.getInt();
+      return new ProgressRounds(total, current, new Date(buffer.getLong()));
+    }
+    long duration = buffer.getLong();
+    return new ProgressTime(duration, new Date(buffer.getLong()));
+  }
+
+  private static void putParameters(ByteBuffer buffer, Parameters parameters) {
+    Map<String, Object> values = parameters.getParameters();
+    buffer.putInt(values.size());
+    for (Map.Entry<String, Object> entry : values.entrySet()) {
+      putString(buffer, entry.getKey());
+      Object value = entry.getValue();
+      if (value == null) {
+        buffer.put(NULL);
+      } else if (value instanceof Integer) {
+        buffer.put(INTEGER).putInt((Integer) value);
+      } else if (value instanceof Long) {
+        buffer.put(LONG).putLong((Long) value);
+      } else if (value instanceof Double) {
+        buffer.put(DOUBLE).putDouble((Double) value);
+      } else if (value instanceof Boolean) {
+        buffer.put(BOOLEAN).put((byte) ((Boolean) value ? 1 : 0));
+      } else {
+        buffer.put(STRING);
+        putString(buffer, value.toString());
+      }
+    }
+  }
+
+  private static Parameters getParameters(ByteBuffer buffer) {
+    Map<String, Object> values = new HashMap<>();
+    for (int n = buffer.getInt(); n > 0; n--) {
+      String key = getString(buffer);
+      byte tag = buffer.get();
+      switch (tag) {
+        case NULL:
+          values.put(key, null);
+          break;
+        case INTEGER:
+          values.put(key, buffer.getInt());
+          break;
+        case LONG:
+          values.put(key, buffer.getLong());
+          break;
+        case DOUBLE:
+          values.put(key, buffer.getDouble());
+          break;
+        case BOOLEAN:
+          values.put(key, buffer.get() != 0);
+          break;
+        default:
+          values.put(key, getString(buffer));
+      }
+    }
+    return new Parameters(values);
+  }
+
+  private static void putBid(ByteBuffer buffer, Bid bid) {
+    Map<String, Value> values = bid.getIssueValues();
+    buffer.putInt(values.size());
+    for (Map.Entry<String, Value> entry : values.entrySet()) {
+      putString(buffer, entry.getKey());
+      if (entry.getValue() instanceof NumberValue) {
+        buffer.put(NUMBER);
+        putString(buffer, ((NumberValue) entry.getValue()).getValue().toString());
+      } else {
+        buffer.put(DISCRETE);
+        putString(buffer, ((DiscreteValue) entry.getValue()).getValue());
+      }
+    }
+  }
+
+  private static Bid getBid(ByteBuffer buffer) {
+    Map<String, Value> values = new HashMap<>();
+    for (int n = buffer.getInt(); n > 0; n--) {
+      String issue = getString(buffer);
+      byte tag = buffer.get();
+      String value = getString(buffer);
+      values.put(issue, tag == NUMBER ? new NumberValue(new BigDecimal(value)) : new DiscreteValue(value));
+    }
+    return new Bid(values);
+  }
+
+  private static void putParty(ByteBuffer buffer, PartyId party) {
+    putString(buffer, party.getName());
+  }
+
+  private static PartyId getParty(ByteBuffer buffer) {
+    return new PartyId(getString(buffer));
+  }
+
+  private static void putString(ByteBuffer buffer, String text) {
+    //Names and values are nearly always ASCII, which is written as is without encoding into a temporary array.
+    int length = text.length();
+    if (length <= buffer.remaining() - Integer.BYTES) {
+      int start = buffer.position();
+      buffer.putInt(length);
+      int i = 0;
+      for (char c; i < length && (c = text.charAt(i)) < 0x80; i++) {
+        buffer.put((byte) c);
+      }
+      if (i == length) {
+        return;
+      }
+      buffer.position(start);
+    }
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    buffer.putInt(bytes.length);
+    buffer.put(bytes);
+  }
+
+  private static String getString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0 || length > buffer.remaining()) {
+      throw new IllegalArgumentException("String of " + length + " bytes does not fit the record");
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,168 @@
+package collabai.group76.journal;
+
+import geniusweb.actions.Action;
+import geniusweb.inform.Inform;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads back the files of a {@link Journal} in the order they were written. A record cut off at the end of a file,
+ * as left behind when the process died while writing, ends that file.
+ */
+public class JournalReader {
+
+  private JournalReader() {
+  }
+
+  /**
+   * @param directory The journal directory
+   * @param name      The name the journal files start with
+   * @return the journal files of that name, oldest first
+   * @throws IOException if the directory cannot be listed
+   */
+  public static List<Path> files(Path directory, String name) throws IOException {
+    Pattern pattern = Pattern.compile(Pattern.quote(name) + "-\\d+" + Pattern.quote(Journal.SUFFIX));
+    try (Stream<Path> listing = Files.list(directory)) {
+      return listing.filter(file -> pattern.matcher(file.getFileName().toString()).matches()).sorted()
+            .collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * @param directory The journal directory
+   * @param name      The name the journal files start with
+   * @return the events of all journal files of that name, in the order they were recorded
+   * @throws IOException if a file cannot be read or is not a journal of this version
+   */
+  public static List<Entry> read(Path directory, String name) throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    for (Path file : files(directory, name)) {
+      entries.addAll(read(file));
+    }
+    return entries;
+  }
+
+  /**
+   * @param file The journal file
+   * @return the events of the file, in the order they were recorded
+   * @throws IOException if the file cannot be read or is not a journal of this version
+   */
+  public static List<Entry> read(Path file) throws IOException {
+    ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() < Journal.HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Not a journal: " + file);
+      }
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    if (buffer.getInt() != Journal.MAGIC) {
+      throw new IOException("Not a journal: " + file);
+    }
+    if (buffer.getInt() != Journal.VERSION) {
+      throw new IOException("Unsupported journal version: " + file);
+    }
+    List<Entry> entries = new ArrayList<>();
+    while (buffer.remaining() >= Integer.BYTES) {
+      int length = buffer.getInt();
+      if (length < 0 || length > buffer.remaining()) {
+        break;
+      }
+      ByteBuffer record = buffer.slice();
+      record.limit(length);
+      buffer.position(buffer.position() + length);
+      try {
+        entries.add(readEntry(record));
+      } catch (BufferUnderflowException | IllegalArgumentException e) {
+        throw new IOException("Journal record at " + (buffer.position() - length) + " is corrupt: " + file, e);
+      }
+    }
+    return entries;
+  }
+
+  private static Entry readEntry(ByteBuffer record) {
+    byte kind = record.get();
+    long nanoTime = record.getLong();
+    long wallMillis = record.getLong();
+    double utility = record.getDouble();
+    if (kind == Journal.INFORM) {
+      return new Entry(true, nanoTime, wallMillis, utility, JournalCodec.getInform(record), null);
+    } else if (kind == Journal.ACTION) {
+      return new Entry(false, nanoTime, wallMillis, utility, null, JournalCodec.getAction(record));
+    }
+    throw new IllegalArgumentException("Unknown record kind " + kind);
+  }
+
+  /**
+   * One recorded event, either an inform received or an action sent.
+   */
+  public static class Entry {
+
+    private final boolean inform;
+    private final long nanoTime;
+    private final long wallMillis;
+    private final double utility;
+    private final Inform received;
+    private final Action sent;
+
+    Entry(boolean inform, long nanoTime, long wallMillis, double utility, Inform received, Action sent) {
+      this.inform = inform;
+      this.nanoTime = nanoTime;
+      this.wallMillis = wallMillis;
+      this.utility = utility;
+      this.received = received;
+      this.sent = sent;
+    }
+
+    /**
+     * @return true if this is an inform received, false if it is an action sent
+     */
+    public boolean isInform() {
+      return inform;
+    }
+
+    /**
+     * @return the {@link System#nanoTime} at which the event was recorded
+     */
+    public long getNanoTime() {
+      return nanoTime;
+    }
+
+    /**
+     * @return the wall clock time in milliseconds at which the event was recorded
+     */
+    public long getWallMillis() {
+      return wallMillis;
+    }
+
+    /**
+     * @return our utility of the bid in the event, NaN if there is none
+     */
+    public double getUtility() {
+      return utility;
+    }
+
+    /**
+     * @return the inform received, null if this is an action or the inform was of a type we do not know
+     */
+    public Inform getInform() {
+      return received;
+    }
+
+    /**
+     * @return the action sent, null if this is an inform or the action was of a type we do not know
+     */
+    public Action getAction() {
+      return sent;
+    }
+  }
+}
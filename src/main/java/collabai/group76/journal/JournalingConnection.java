@@ -0,0 +1,84 @@
+package collabai.group76.journal;
+
+import geniusweb.actions.Accept;
+import geniusweb.actions.Action;
+import geniusweb.actions.Offer;
+import geniusweb.connection.ConnectionEnd;
+import geniusweb.inform.Inform;
+import geniusweb.issuevalue.Bid;
+import geniusweb.references.Reference;
+import java.io.IOException;
+import java.net.URI;
+import java.util.function.ToDoubleFunction;
+import tudelft.utilities.listener.Listener;
+
+/**
+ * Connection that records every action in a {@link Journal} before passing it on to the real connection.
+ */
+public class JournalingConnection implements ConnectionEnd<Inform, Action> {
+
+  private final ConnectionEnd<Inform, Action> delegate;
+  private final Journal journal;
+  private final ToDoubleFunction<Bid> utility;
+
+  /**
+   * @param delegate The connection to send the actions on
+   * @param journal  The journal to record the actions in
+   * @param utility  Our utility of a bid, recorded with offers and accepts
+   */
+  public JournalingConnection(ConnectionEnd<Inform, Action> delegate, Journal journal, ToDoubleFunction<Bid> utility) {
+    this.delegate = delegate;
+    this.journal = journal;
+    this.utility = utility;
+  }
+
+  /**
+   * @param action  The action
+   * @param utility Our utility of a bid
+   * @return our utility of the bid the action is about, NaN if it is not an offer or accept
+   */
+  public static double utilityOf(Action action, ToDoubleFunction<Bid> utility) {
+    if (action instanceof Offer) {
+      return utility.applyAsDouble(((Offer) action).getBid());
+    } else if (action instanceof Accept) {
+      return utility.applyAsDouble(((Accept) action).getBid());
+    }
+    return Double.NaN;
+  }
+
+  @Override
+  public void send(Action action) throws IOException {
+    journal.recordAction(action, utilityOf(action, utility));
+    delegate.send(action);
+  }
+
+  @Override
+  public Reference getReference() {
+    return delegate.getReference();
+  }
+
+  @Override
+  public URI getRemoteURI() {
+    return delegate.getRemoteURI();
+  }
+
+  @Override
+  public void close() {
+    delegate.close();
+  }
+
+  @Override
+  public Throwable getError() {
+    return delegate.getError();
+  }
+
+  @Override
+  public void addListener(Listener<Inform> listener) {
+    delegate.addListener(listener);
+  }
+
+  @Override
+  public void removeListener(Listener<Inform> listener) {
+    delegate.removeListener(listener);
+  }
+}
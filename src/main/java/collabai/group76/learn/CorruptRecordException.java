@@ -0,0 +1,19 @@
+package collabai.group76.learn;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the bytes of a {@link SessionRecord} fail their checksum, so the record can never be read and its file
+ * can be deleted. Other failures to read a record may pass and leave the file in place.
+ */
+public class CorruptRecordException extends IOException {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * @param message What is wrong with the record
+   */
+  public CorruptRecordException(String message) {
+    super(message);
+  }
+}
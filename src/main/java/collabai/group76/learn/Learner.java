@@ -0,0 +1,156 @@
+package collabai.group76.learn;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Learning pipeline over a learning directory. Every finished session adds a {@link SessionRecord} file to the records
+ * subdirectory. A learning phase ingests all records in parallel, merges them into the {@link OpponentStore} and then
+ * deletes them, so the directory is compacted into a single store that the next session maps at its start. A learning
+ * phase holds a lock on a file in the directory, so learning phases of different processes sharing the directory run
+ * one at a time.
+ */
+public class Learner {
+
+  private static final String STORE_FILE = "opponents.bin";
+  private static final String RECORD_DIR = "records";
+  private static final String RECORD_SUFFIX = ".rec";
+  private static final String LOCK_FILE = "learn.lock";
+
+  private Learner() {
+  }
+
+  /**
+   * @param directory The learning directory
+   * @return the opponent store of the directory
+   */
+  public static Path storeFile(Path directory) {
+    return directory.resolve(STORE_FILE);
+  }
+
+  /**
+   * Adds the record of a finished session. The record is written to a temporary file and then moved in place, so a
+   * learning phase never reads a partially written record.
+   *
+   * @param directory The learning directory
+   * @param record    The record of the session
+   * @throws IOException if the record cannot be written
+   */
+  public static void record(Path directory, SessionRecord record) throws IOException {
+    Path records = directory.resolve(RECORD_DIR);
+    Files.createDirectories(records);
+    Path file = records.resolve(UUID.randomUUID() + RECORD_SUFFIX);
+    Path temp = Files.createTempFile(records, file.getFileName().toString(), ".tmp");
+    try {
+      Files.write(temp, record.toBytes());
+      try {
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, file);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Ingests the records of the directory into its store. Records are read and aggregated per opponent in parallel,
+   * merged with the store and the store is written again. The ingested records are deleted afterwards, and so are
+   * records that fail their checksum as they can never be read. Records that could not be read for another reason,
+   * such as a passing I/O error or a newer format, are left for a later learning phase. A corrupt store or one of an
+   * older version is replaced. The whole phase runs under the lock of the directory, and within this JVM one phase runs
+   * at a time, as a JVM cannot hold the same file lock twice.
+   *
+   * @param directory The learning directory
+   * @return the number of records ingested
+   * @throws IOException if the directory or the store cannot be read or written, or the directory cannot be locked
+   */
+  public static synchronized int learn(Path directory) throws IOException {
+    Path records = directory.resolve(RECORD_DIR);
+    if (!Files.isDirectory(records)) {
+      return 0;
+    }
+    try (FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE);
+         FileLock lock = channel.lock()) {
+      return learnLocked(directory, records);
+    }
+  }
+
+  private static int learnLocked(Path directory, Path records) throws IOException {
+    List<Path> files;
+    try (Stream<Path> listing = Files.list(records)) {
+      files = listing.filter(file -> file.getFileName().toString().endsWith(RECORD_SUFFIX))
+            .collect(Collectors.toList());
+    }
+    List<RecordFile> read = files.parallelStream().map(Learner::read).collect(Collectors.toList());
+    List<SessionRecord> ingested = read.stream().map(file -> file.record).filter(Objects::nonNull)
+          .collect(Collectors.toList());
+    ConcurrentMap<String, OpponentStats> stats = ingested.parallelStream()
+          .collect(Collectors.toConcurrentMap(SessionRecord::getKey, OpponentStats::of, OpponentStats::merge));
+    Path storeFile = storeFile(directory);
+    for (Map.Entry<String, OpponentStats> entry : readStore(storeFile).entrySet()) {
+      stats.merge(entry.getKey(), entry.getValue(), OpponentStats::merge);
+    }
+    OpponentStore.write(storeFile, stats);
+    for (RecordFile file : read) {
+      if (file.record != null || file.corrupt) {
+        Files.deleteIfExists(file.path);
+      }
+    }
+    return ingested.size();
+  }
+
+  /**
+   * @return the entries of the store, none if there is no store or it is corrupt or of an older version
+   */
+  private static Map<String, OpponentStats> readStore(Path storeFile) {
+    try {
+      OpponentStore store = OpponentStore.open(storeFile);
+      return store == null ? Collections.emptyMap() : store.entries();
+    } catch (IOException e) {
+      return Collections.emptyMap();
+    }
+  }
+
+  private static RecordFile read(Path file) {
+    try {
+      return new RecordFile(file, SessionRecord.fromBytes(Files.readAllBytes(file)), false);
+    } catch (CorruptRecordException e) {
+      return new RecordFile(file, null, true);
+    } catch (IOException e) {
+      return new RecordFile(file, null, false);
+    }
+  }
+
+  /**
+   * A record file and what reading it gave.
+   */
+  private static class RecordFile {
+    final Path path;
+    //Null if the file could not be read.
+    final SessionRecord record;
+    //The file failed its checksum and can never be read.
+    final boolean corrupt;
+
+    RecordFile(Path path, SessionRecord record, boolean corrupt) {
+      this.path = path;
+      this.record = record;
+      this.corrupt = corrupt;
+    }
+  }
+}
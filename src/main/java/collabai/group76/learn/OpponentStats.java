@@ -0,0 +1,122 @@
+package collabai.group76.learn;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Statistics of one opponent on one domain, summed over the sessions we played against it: how fast it conceded, the
+ * utility of the agreements we reached and the weight it seemed to give every issue. Sums are kept instead of means,
+ * so statistics ingested in parallel can be merged in any order.
+ */
+public class OpponentStats {
+
+  private int sessions;
+  private int agreements;
+  private double concessionSum;
+  private double agreementUtilitySum;
+  //Summed weight of every issue, in the order the issues were first seen.
+  private final Map<String, Double> issueWeightSums = new LinkedHashMap<>();
+
+  /**
+   * @param record The session to add
+   * @return this statistics object
+   */
+  public OpponentStats add(SessionRecord record) {
+    sessions++;
+    concessionSum += record.getConcessionSpeed();
+    if (!Double.isNaN(record.getAgreementUtility())) {
+      agreements++;
+      agreementUtilitySum += record.getAgreementUtility();
+    }
+    for (int i = 0; i < record.issueCount(); i++) {
+      issueWeightSums.merge(record.getIssue(i), record.getIssueWeight(i), Double::sum);
+    }
+    return this;
+  }
+
+  /**
+   * @param other The statistics to add, of the same opponent and domain
+   * @return this statistics object
+   */
+  public OpponentStats merge(OpponentStats other) {
+    sessions += other.sessions;
+    agreements += other.agreements;
+    concessionSum += other.concessionSum;
+    agreementUtilitySum += other.agreementUtilitySum;
+    other.issueWeightSums.forEach((issue, sum) -> issueWeightSums.merge(issue, sum, Double::sum));
+    return this;
+  }
+
+  /**
+   * @param record The first session of the opponent
+   * @return new statistics holding that session
+   */
+  public static OpponentStats of(SessionRecord record) {
+    return new OpponentStats().add(record);
+  }
+
+  /**
+   * @return the number of sessions played against the opponent
+   */
+  public int getSessions() {
+    return sessions;
+  }
+
+  /**
+   * @return the number of those sessions that ended in an agreement
+   */
+  public int getAgreements() {
+    return agreements;
+  }
+
+  /**
+   * @return how much the utility of the opponent's bids rose per unit of progress on average
+   */
+  public double getConcessionSpeed() {
+    return sessions == 0 ? 0 : concessionSum / sessions;
+  }
+
+  /**
+   * @return the average utility of our agreements with the opponent, NaN if we never agreed
+   */
+  public double getAgreementUtility() {
+    return agreements == 0 ? Double.NaN : agreementUtilitySum / agreements;
+  }
+
+  /**
+   * @param issue The name of the issue
+   * @return the average weight the opponent gave the issue, NaN if it was never seen
+   */
+  public double getIssueWeight(String issue) {
+    Double sum = issueWeightSums.get(issue);
+    return sum == null ? Double.NaN : sum / sessions;
+  }
+
+  void write(DataOutputStream out) throws IOException {
+    out.writeInt(sessions);
+    out.writeInt(agreements);
+    out.writeDouble(concessionSum);
+    out.writeDouble(agreementUtilitySum);
+    out.writeInt(issueWeightSums.size());
+    for (Map.Entry<String, Double> entry : issueWeightSums.entrySet()) {
+      out.writeUTF(entry.getKey());
+      out.writeDouble(entry.getValue());
+    }
+  }
+
+  static OpponentStats read(ByteBuffer buffer) {
+    OpponentStats stats = new OpponentStats();
+    stats.sessions = buffer.getInt();
+    stats.agreements = buffer.getInt();
+    stats.concessionSum = buffer.getDouble();
+    stats.agreementUtilitySum = buffer.getDouble();
+    int issues = buffer.getInt();
+    for (int i = 0; i < issues; i++) {
+      stats.issueWeightSums.put(SessionRecord.readUtf(buffer), buffer.getDouble());
+    }
+    return stats;
+  }
+}
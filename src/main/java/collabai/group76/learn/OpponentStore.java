@@ -0,0 +1,240 @@
+package collabai.group76.learn;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Read only store of {@link OpponentStats}, keyed on opponent and domain. The file starts with a header holding a
+ * magic number, the format version and the number of slots and entries. An open addressing hash table of entry
+ * offsets follows, and then the entries themselves, each with a CRC32. Opening a store maps the file and checks the
+ * header, and a lookup probes the table and reads only the entry it needs, so both take O(1) whatever the number of
+ * opponents. A store is never changed in place, {@link #write} replaces the whole file.
+ */
+public class OpponentStore {
+
+  private static final int MAGIC = 0x4737364F;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 16;
+  private static final int MIN_SLOTS = 16;
+
+  private final Path file;
+  private final ByteBuffer buffer;
+  private final int slots;
+  private final int size;
+
+  private OpponentStore(Path file, ByteBuffer buffer, int slots, int size) {
+    this.file = file;
+    this.buffer = buffer;
+    this.slots = slots;
+    this.size = size;
+  }
+
+  /**
+   * @param opponent The name of the opponent
+   * @param domain   The name of the domain
+   * @return the key of the opponent's statistics on the domain
+   */
+  public static String key(String opponent, String domain) {
+    return opponent + '\n' + domain;
+  }
+
+  /**
+   * Maps a store read only.
+   *
+   * @param file The store file
+   * @return the store, or null if there is no store
+   * @throws IOException if the file cannot be read or is not a store of this version
+   */
+  public static OpponentStore open(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Not an opponent store: " + file);
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.getInt(0) != MAGIC) {
+        throw new IOException("Not an opponent store: " + file);
+      }
+      if (buffer.getInt(4) != VERSION) {
+        throw new IOException("Unsupported opponent store version: " + file);
+      }
+      int slots = buffer.getInt(8);
+      int size = buffer.getInt(12);
+      if (slots < MIN_SLOTS || Integer.bitCount(slots) != 1 || size < 0 || size > slots
+            || HEADER_SIZE + (long) slots * Long.BYTES > channel.size()) {
+        throw new IOException("Opponent store has a corrupt header: " + file);
+      }
+      return new OpponentStore(file, buffer, slots, size);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return the number of opponent and domain pairs in the store
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @param opponent The name of the opponent
+   * @param domain   The name of the domain
+   * @return the statistics of the opponent on the domain, null if we never played it there
+   * @throws IOException if the entry is corrupt
+   */
+  public OpponentStats get(String opponent, String domain) throws IOException {
+    String key = key(opponent, domain);
+    int mask = slots - 1;
+    for (int probe = 0, slot = hash(key) & mask; probe < slots; probe++, slot = (slot + 1) & mask) {
+      long offset = buffer.getLong(HEADER_SIZE + slot * Long.BYTES);
+      if (offset == 0) {
+        return null;
+      }
+      ByteBuffer entry = entry(offset);
+      if (key.equals(SessionRecord.readUtf(entry))) {
+        return readStats(entry);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Reads every entry, for merging the store with new sessions.
+   *
+   * @return the statistics by key
+   * @throws IOException if an entry is corrupt
+   */
+  public Map<String, OpponentStats> entries() throws IOException {
+    Map<String, OpponentStats> entries = new HashMap<>();
+    for (int slot = 0; slot < slots; slot++) {
+      long offset = buffer.getLong(HEADER_SIZE + slot * Long.BYTES);
+      if (offset != 0) {
+        ByteBuffer entry = entry(offset);
+        String key = SessionRecord.readUtf(entry);
+        entries.put(key, readStats(entry));
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Checks the CRC32 of the entry at the given offset.
+   *
+   * @return a buffer on the entry's contents
+   */
+  private ByteBuffer entry(long offset) throws IOException {
+    try {
+      if (offset < HEADER_SIZE + (long) slots * Long.BYTES || offset > buffer.capacity() - Integer.BYTES) {
+        throw new IOException("Opponent store entry offset " + offset + " out of range: " + file);
+      }
+      ByteBuffer entry = buffer.duplicate();
+      entry.position((int) offset);
+      int length = entry.getInt();
+      if (length < 0 || length > entry.remaining() - Long.BYTES) {
+        throw new IOException("Opponent store entry at " + offset + " is truncated: " + file);
+      }
+      entry.limit(entry.position() + length + Long.BYTES);
+      ByteBuffer contents = entry.slice();
+      contents.limit(length);
+      CRC32 crc = new CRC32();
+      crc.update(contents.duplicate());
+      if (entry.getLong(entry.position() + length) != crc.getValue()) {
+        throw new IOException("Opponent store entry at " + offset + " has a checksum mismatch: " + file);
+      }
+      return contents;
+    } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+      throw new IOException("Opponent store entry at " + offset + " is corrupt: " + file, e);
+    }
+  }
+
+  private OpponentStats readStats(ByteBuffer entry) throws IOException {
+    try {
+      return OpponentStats.read(entry);
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Opponent store entry is corrupt: " + file, e);
+    }
+  }
+
+  private static int hash(String key) {
+    int hash = key.hashCode();
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * Writes a store to a temporary file next to the store file and then moves it in place, so readers never see a
+   * partially written store. The hash table gets at least twice as many slots as there are entries.
+   *
+   * @param file    The store file
+   * @param entries The statistics by key
+   * @throws IOException if the file cannot be written
+   */
+  public static void write(Path file, Map<String, OpponentStats> entries) throws IOException {
+    int slots = MIN_SLOTS;
+    while (slots < 2 * entries.size()) {
+      slots <<= 1;
+    }
+    long[] offsets = new long[slots];
+    List<byte[]> encoded = new ArrayList<>();
+    long offset = HEADER_SIZE + (long) slots * Long.BYTES;
+    int mask = slots - 1;
+    for (Map.Entry<String, OpponentStats> entry : entries.entrySet()) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (DataOutputStream out = new DataOutputStream(bytes)) {
+        out.writeUTF(entry.getKey());
+        entry.getValue().write(out);
+      }
+      byte[] contents = bytes.toByteArray();
+      int slot = hash(entry.getKey()) & mask;
+      while (offsets[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      offsets[slot] = offset;
+      encoded.add(contents);
+      offset += Integer.BYTES + contents.length + Long.BYTES;
+    }
+    Path directory = file.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temp))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(slots);
+        out.writeInt(entries.size());
+        for (long slotOffset : offsets) {
+          out.writeLong(slotOffset);
+        }
+        for (byte[] contents : encoded) {
+          CRC32 crc = new CRC32();
+          crc.update(contents);
+          out.writeInt(contents.length);
+          out.write(contents);
+          out.writeLong(crc.getValue());
+        }
+      }
+      try {
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+}
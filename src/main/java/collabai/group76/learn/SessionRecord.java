@@ -0,0 +1,193 @@
+package collabai.group76.learn;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * What we saw of one opponent in one session, written when the session finishes and ingested by the next learning
+ * phase. All utilities are our own. The binary form starts with a magic number and the format version and ends with a
+ * CRC32 of everything before it.
+ */
+public class SessionRecord {
+
+  private static final int MAGIC = 0x47373652;
+  private static final int VERSION = 1;
+
+  private final String opponent;
+  private final String domain;
+  private final double time;
+  private final double firstUtility;
+  private final double lastUtility;
+  private final double agreementUtility;
+  private final String[] issues;
+  private final double[] issueWeights;
+
+  /**
+   * @param opponent         The name of the opponent, without session specific numbers
+   * @param domain           The name of the domain
+   * @param time             The progress at which the session ended, between 0 and 1
+   * @param firstUtility     The utility of the first bid the opponent made
+   * @param lastUtility      The utility of the last bid the opponent made
+   * @param agreementUtility The utility of the agreement, NaN if there was none
+   * @param issues           The issues of the domain
+   * @param issueWeights     The estimated weight the opponent gives every issue, summing to 1
+   */
+  public SessionRecord(String opponent, String domain, double time, double firstUtility, double lastUtility,
+                       double agreementUtility, String[] issues, double[] issueWeights) {
+    if (issues.length != issueWeights.length) {
+      throw new IllegalArgumentException("Got " + issueWeights.length + " weights for " + issues.length + " issues");
+    }
+    this.opponent = opponent;
+    this.domain = domain;
+    this.time = time;
+    this.firstUtility = firstUtility;
+    this.lastUtility = lastUtility;
+    this.agreementUtility = agreementUtility;
+    this.issues = issues.clone();
+    this.issueWeights = issueWeights.clone();
+  }
+
+  /**
+   * @return the store key of the opponent on this domain
+   */
+  public String getKey() {
+    return OpponentStore.key(opponent, domain);
+  }
+
+  /**
+   * @return the name of the opponent
+   */
+  public String getOpponent() {
+    return opponent;
+  }
+
+  /**
+   * @return the name of the domain
+   */
+  public String getDomain() {
+    return domain;
+  }
+
+  /**
+   * @return how much the utility of the opponent's bids rose per unit of progress
+   */
+  public double getConcessionSpeed() {
+    return time > 0 ? (lastUtility - firstUtility) / time : 0;
+  }
+
+  /**
+   * @return the utility of the agreement, NaN if there was none
+   */
+  public double getAgreementUtility() {
+    return agreementUtility;
+  }
+
+  /**
+   * @return the number of issues
+   */
+  public int issueCount() {
+    return issues.length;
+  }
+
+  /**
+   * @param issue The issue number
+   * @return the name of the issue
+   */
+  public String getIssue(int issue) {
+    return issues[issue];
+  }
+
+  /**
+   * @param issue The issue number
+   * @return the estimated weight the opponent gives the issue
+   */
+  public double getIssueWeight(int issue) {
+    return issueWeights[issue];
+  }
+
+  /**
+   * @return the binary form of the record
+   */
+  public byte[] toBytes() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeUTF(opponent);
+      out.writeUTF(domain);
+      out.writeDouble(time);
+      out.writeDouble(firstUtility);
+      out.writeDouble(lastUtility);
+      out.writeDouble(agreementUtility);
+      out.writeInt(issues.length);
+      for (int i = 0; i < issues.length; i++) {
+        out.writeUTF(issues[i]);
+        out.writeDouble(issueWeights[i]);
+      }
+      CRC32 crc = new CRC32();
+      crc.update(bytes.toByteArray());
+      out.writeLong(crc.getValue());
+    } catch (IOException e) {
+      //Writing to memory does not fail.
+      throw new IllegalStateException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * @param bytes The binary form of a record
+   * @return the record
+   * @throws CorruptRecordException if the bytes fail their checksum
+   * @throws IOException              if the bytes are not a record of this version
+   */
+  public static SessionRecord fromBytes(byte[] bytes) throws IOException {
+    if (bytes.length < Long.BYTES) {
+      throw new CorruptRecordException("Session record of " + bytes.length + " bytes is truncated");
+    }
+    CRC32 crc = new CRC32();
+    crc.update(bytes, 0, bytes.length - Long.BYTES);
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    if (buffer.getLong(bytes.length - Long.BYTES) != crc.getValue()) {
+      throw new CorruptRecordException("Session record checksum mismatch");
+    }
+    try {
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        throw new IOException("Not a session record of version " + VERSION);
+      }
+      String opponent = readUtf(buffer);
+      String domain = readUtf(buffer);
+      double time = buffer.getDouble();
+      double firstUtility = buffer.getDouble();
+      double lastUtility = buffer.getDouble();
+      double agreementUtility = buffer.getDouble();
+      int count = buffer.getInt();
+      if (count < 0 || count > buffer.remaining()) {
+        throw new IOException("Session record has " + count + " issues");
+      }
+      String[] issues = new String[count];
+      double[] weights = new double[count];
+      for (int i = 0; i < count; i++) {
+        issues[i] = readUtf(buffer);
+        weights[i] = buffer.getDouble();
+      }
+      return new SessionRecord(opponent, domain, time, firstUtility, lastUtility, agreementUtility, issues, weights);
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Session record is truncated", e);
+    }
+  }
+
+  /**
+   * Reads a string written by {@link DataOutputStream#writeUTF}, which is plain UTF-8 for the names we store.
+   */
+  static String readUtf(ByteBuffer buffer) {
+    int length = buffer.getShort() & 0xffff;
+    byte[] utf = new byte[length];
+    buffer.get(utf);
+    return new String(utf, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,217 @@
+package collabai.group76.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Sink that keeps all metrics in memory: a histogram per timer, a counter per event and histograms of window sizes and
+ * mailbox depths.
+ * It can be registered as an MBean to read the metrics of a running agent over JMX.
+ */
+public class InMemoryMetricsSink implements MetricsSink, InMemoryMetricsSinkMBean {
+
+  private static final double NANOS_PER_MICRO = 1000.0;
+
+  private final Map<Timer, Histogram> latencies = new EnumMap<>(Timer.class);
+  private final Map<Counter, LongAdder> counters = new EnumMap<>(Counter.class);
+  private final Histogram windowSizes = new Histogram();
+  private final Histogram mailboxDepths = new Histogram();
+  private ObjectName registeredName;
+
+  public InMemoryMetricsSink() {
+    for (Timer timer : Timer.values()) {
+      latencies.put(timer, new Histogram());
+    }
+    for (Counter counter : Counter.values()) {
+      counters.put(counter, new LongAdder());
+    }
+  }
+
+  /**
+   * Registers this sink with the platform MBean server.
+   *
+   * @param name The object name, e.g. collabai.group76:type=Metrics,party=party1
+   * @throws JMException if the name is invalid or already registered
+   */
+  public synchronized void register(String name) throws JMException {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName objectName = new ObjectName(name);
+    server.registerMBean(this, objectName);
+    this.registeredName = objectName;
+  }
+
+  /**
+   * Unregisters this sink from the platform MBean server, if it was registered.
+   */
+  @Override
+  public synchronized void close() {
+    if (registeredName != null) {
+      try {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+      } catch (JMException e) {
+        //Already gone, nothing left to release.
+      }
+      registeredName = null;
+    }
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return true;
+  }
+
+  @Override
+  public void recordLatency(Timer timer, long nanos) {
+    latencies.get(timer).record(nanos);
+  }
+
+  @Override
+  public void increment(Counter counter) {
+    counters.get(counter).increment();
+  }
+
+  @Override
+  public void recordWindowSize(int size) {
+    windowSizes.record(size);
+  }
+
+  @Override
+  public void recordMailboxDepth(int depth) {
+    mailboxDepths.record(depth);
+  }
+
+  /**
+   * @param timer The timer
+   * @return the histogram of its latencies, in nanoseconds
+   */
+  public Histogram getLatencies(Timer timer) {
+    return latencies.get(timer);
+  }
+
+  /**
+   * @param counter The counter
+   * @return the number of times the event happened
+   */
+  public long getCount(Counter counter) {
+    return counters.get(counter).sum();
+  }
+
+  /**
+   * @return the histogram of window sizes
+   */
+  public Histogram getWindowSizes() {
+    return windowSizes;
+  }
+
+  /**
+   * @return the histogram of mailbox depths
+   */
+  public Histogram getMailboxDepths() {
+    return mailboxDepths;
+  }
+
+  @Override
+  public long getTurns() {
+    return latencies.get(Timer.TURN).getCount();
+  }
+
+  @Override
+  public double getTurnMeanMicros() {
+    return latencies.get(Timer.TURN).getMean() / NANOS_PER_MICRO;
+  }
+
+  @Override
+  public long getTurnP99Micros() {
+    return (long) (latencies.get(Timer.TURN).getPercentile(99) / NANOS_PER_MICRO);
+  }
+
+  @Override
+  public long getTurnMaxMicros() {
+    return (long) (latencies.get(Timer.TURN).getMax() / NANOS_PER_MICRO);
+  }
+
+  @Override
+  public double getBidGenerationMeanMicros() {
+    return latencies.get(Timer.BID_GENERATION).getMean() / NANOS_PER_MICRO;
+  }
+
+  @Override
+  public long getBidGenerationP99Micros() {
+    return (long) (latencies.get(Timer.BID_GENERATION).getPercentile(99) / NANOS_PER_MICRO);
+  }
+
+  @Override
+  public double getAcceptanceMeanMicros() {
+    return latencies.get(Timer.ACCEPTANCE).getMean() / NANOS_PER_MICRO;
+  }
+
+  @Override
+  public long getAcceptanceP99Micros() {
+    return (long) (latencies.get(Timer.ACCEPTANCE).getPercentile(99) / NANOS_PER_MICRO);
+  }
+
+  @Override
+  public long getOffers() {
+    return getCount(Counter.OFFERS);
+  }
+
+  @Override
+  public long getAccepts() {
+    return getCount(Counter.ACCEPTS);
+  }
+
+  @Override
+  public long getFallbackBids() {
+    return getCount(Counter.FALLBACK_BIDS);
+  }
+
+  @Override
+  public long getPrefetchHits() {
+    return getCount(Counter.PREFETCH_HITS);
+  }
+
+  @Override
+  public long getPrefetchMisses() {
+    return getCount(Counter.PREFETCH_MISSES);
+  }
+
+  @Override
+  public double getWindowSizeMean() {
+    return windowSizes.getMean();
+  }
+
+  @Override
+  public long getWindowSizeMax() {
+    return windowSizes.getMax();
+  }
+
+  @Override
+  public double getMailboxWaitMeanMicros() {
+    return latencies.get(Timer.MAILBOX_WAIT).getMean() / NANOS_PER_MICRO;
+  }
+
+  @Override
+  public long getMailboxWaitP99Micros() {
+    return (long) (latencies.get(Timer.MAILBOX_WAIT).getPercentile(99) / NANOS_PER_MICRO);
+  }
+
+  @Override
+  public long getMailboxWaitMaxMicros() {
+    return (long) (latencies.get(Timer.MAILBOX_WAIT).getMax() / NANOS_PER_MICRO);
+  }
+
+  @Override
+  public long getMailboxBlocked() {
+    return getCount(Counter.MAILBOX_BLOCKED);
+  }
+
+  @Override
+  public long getMailboxDepthMax() {
+    return mailboxDepths.getMax();
+  }
+}
@@ -0,0 +1,47 @@
+package collabai.group76.metrics;
+
+/**
+ * JMX view on an {@link InMemoryMetricsSink}. Latencies are in microseconds.
+ */
+public interface InMemoryMetricsSinkMBean {
+
+  long getTurns();
+
+  double getTurnMeanMicros();
+
+  long getTurnP99Micros();
+
+  long getTurnMaxMicros();
+
+  double getBidGenerationMeanMicros();
+
+  long getBidGenerationP99Micros();
+
+  double getAcceptanceMeanMicros();
+
+  long getAcceptanceP99Micros();
+
+  long getOffers();
+
+  long getAccepts();
+
+  long getFallbackBids();
+
+  long getPrefetchHits();
+
+  long getPrefetchMisses();
+
+  double getWindowSizeMean();
+
+  long getWindowSizeMax();
+
+  double getMailboxWaitMeanMicros();
+
+  long getMailboxWaitP99Micros();
+
+  long getMailboxWaitMaxMicros();
+
+  long getMailboxBlocked();
+
+  long getMailboxDepthMax();
+}
@@ -0,0 +1,69 @@
+package collabai.group76.metrics;
+
+/**
+ * Receives the structured metrics of a negotiation session. The agent checks {@link #isEnabled()} before measuring
+ * anything, so a disabled sink costs no clock reads or allocations on the negotiation thread.
+ */
+public interface MetricsSink {
+
+  /**
+   * Latencies measured by the agent, in nanoseconds.
+   */
+  enum Timer {
+    //Whole turn, from YourTurn up to sending our action.
+    TURN,
+    //Picking the bid for a counter offer.
+    BID_GENERATION,
+    //Deciding whether the last received bid is acceptable.
+    ACCEPTANCE,
+    //Time an inform waited in the session's mailbox before it was handled, when the session runs on a host.
+    MAILBOX_WAIT
+  }
+
+  /**
+   * Events counted by the agent.
+   */
+  enum Counter {
+    OFFERS,
+    ACCEPTS,
+    //Counter offers where no bid above our target utility was available.
+    FALLBACK_BIDS,
+    //Turns whose bids were already counted while the opponent was thinking, and turns that had to count further.
+    PREFETCH_HITS,
+    PREFETCH_MISSES,
+    //Informs that had to wait for room because the session's mailbox was full.
+    MAILBOX_BLOCKED
+  }
+
+  /**
+   * @return true if this sink wants metrics
+   */
+  boolean isEnabled();
+
+  /**
+   * @param timer The latency measured
+   * @param nanos The latency in nanoseconds
+   */
+  void recordLatency(Timer timer, long nanos);
+
+  /**
+   * @param counter The event that happened
+   */
+  void increment(Counter counter);
+
+  /**
+   * @param size The number of received bids in the acceptance window
+   */
+  void recordWindowSize(int size);
+
+  /**
+   * @param depth The number of informs waiting in the session's mailbox after one was queued
+   */
+  void recordMailboxDepth(int depth);
+
+  /**
+   * Releases whatever the sink registered, called when the session ends.
+   */
+  default void close() {
+  }
+}
@@ -0,0 +1,33 @@
+package collabai.group76.metrics;
+
+/**
+ * Sink that wants no metrics, the default of the agent.
+ */
+public final class NoopMetricsSink implements MetricsSink {
+
+  public static final NoopMetricsSink INSTANCE = new NoopMetricsSink();
+
+  private NoopMetricsSink() {
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return false;
+  }
+
+  @Override
+  public void recordLatency(Timer timer, long nanos) {
+  }
+
+  @Override
+  public void increment(Counter counter) {
+  }
+
+  @Override
+  public void recordWindowSize(int size) {
+  }
+
+  @Override
+  public void recordMailboxDepth(int depth) {
+  }
+}
@@ -0,0 +1,132 @@
+package collabai.group76.opponent;
+
+import collabai.group76.util.BidCodec;
+
+/**
+ * Frequency based opponent model. The opponent is assumed to offer its preferred values most often, so a value's
+ * utility is estimated from how often it was offered relative to the most offered value of its issue. Issues the
+ * opponent keeps the same value on between consecutive bids are assumed to matter more to it, and get a higher weight.
+ * All counts are kept in primitive arrays indexed by issue number and value ordinal, so an update and an estimate both
+ * take O(issues).
+ */
+public class FrequencyOpponentModel implements OpponentModel {
+
+  private final BidCodec codec;
+  //Number of times each value was offered, indexed by issue number and value ordinal.
+  private final int[][] counts;
+  //Highest count of every issue.
+  private final int[] maxCounts;
+  //Number of consecutive bids that kept the value of every issue.
+  private final int[] unchanged;
+  private final int[] lastDigits;
+  private int bidsSeen;
+  private long version;
+
+  /**
+   * @param codec The codec of the domain
+   */
+  public FrequencyOpponentModel(BidCodec codec) {
+    this.codec = codec;
+    int issues = codec.issueCount();
+    this.counts = new int[issues][];
+    for (int i = 0; i < issues; i++) {
+      counts[i] = new int[codec.valueCount(i)];
+    }
+    this.maxCounts = new int[issues];
+    this.unchanged = new int[issues];
+    this.lastDigits = new int[issues];
+  }
+
+  private FrequencyOpponentModel(FrequencyOpponentModel model) {
+    this.codec = model.codec;
+    this.counts = new int[model.counts.length][];
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = model.counts[i].clone();
+    }
+    this.maxCounts = model.maxCounts.clone();
+    this.unchanged = model.unchanged.clone();
+    this.lastDigits = model.lastDigits.clone();
+    this.bidsSeen = model.bidsSeen;
+    this.version = model.version;
+  }
+
+  @Override
+  public void update(long bidId) {
+    if (bidId < 0) {
+      return;
+    }
+    for (int i = 0; i < counts.length; i++) {
+      int digit = codec.digit(bidId, i);
+      if (bidsSeen > 0 && lastDigits[i] == digit) {
+        unchanged[i]++;
+      }
+      lastDigits[i] = digit;
+      maxCounts[i] = Math.max(maxCounts[i], ++counts[i][digit]);
+    }
+    bidsSeen++;
+    version++;
+  }
+
+  @Override
+  public double utility(long bidId) {
+    double utility = 0;
+    double totalWeight = 0;
+    long rest = bidId;
+    for (int i = counts.length - 1; i >= 0; i--) {
+      int radix = counts[i].length;
+      //Laplace smoothing keeps unseen values and issues above zero.
+      double weight = unchanged[i] + 1;
+      utility += weight * (counts[i][(int) (rest % radix)] + 1) / (maxCounts[i] + 1);
+      totalWeight += weight;
+      rest /= radix;
+    }
+    return totalWeight == 0 ? 0 : utility / totalWeight;
+  }
+
+  /**
+   * @return the weight the opponent seems to give every issue, summing to 1
+   */
+  public double[] issueWeights() {
+    double[] weights = new double[unchanged.length];
+    double total = 0;
+    for (int i = 0; i < weights.length; i++) {
+      weights[i] = unchanged[i] + 1;
+      total += weights[i];
+    }
+    for (int i = 0; i < weights.length; i++) {
+      weights[i] /= total;
+    }
+    return weights;
+  }
+
+  /**
+   * Starts the issue weights from what we learned in earlier sessions, as if the opponent had kept each issue's value
+   * in a share of the given number of bids matching its weight.
+   *
+   * @param weights The learned weight of every issue, issues with a NaN weight are skipped
+   * @param bids    How many bids the learned weights count for
+   */
+  public void addIssuePrior(double[] weights, int bids) {
+    for (int i = 0; i < unchanged.length && i < weights.length; i++) {
+      if (!Double.isNaN(weights[i])) {
+        unchanged[i] += (int) Math.round(weights[i] * bids);
+      }
+    }
+    version++;
+  }
+
+  @Override
+  public int getBidsSeen() {
+    return bidsSeen;
+  }
+
+  @Override
+  public long getVersion() {
+    return version;
+  }
+
+  @Override
+  public FrequencyOpponentModel snapshot() {
+    return new FrequencyOpponentModel(this);
+  }
+}
@@ -0,0 +1,38 @@
+package collabai.group76.opponent;
+
+import collabai.group76.util.BidCodec;
+
+/**
+ * Estimate of the opponent's preferences, learned from the bids the opponent made. Bids are given as {@link BidCodec}
+ * indices.
+ */
+public interface OpponentModel {
+
+  /**
+   * Learns from a bid the opponent made.
+   *
+   * @param bidId The index of the bid
+   */
+  void update(long bidId);
+
+  /**
+   * @param bidId The index of a bid
+   * @return the estimated utility of the bid for the opponent, in [0, 1]
+   */
+  double utility(long bidId);
+
+  /**
+   * @return the number of bids the model learned from
+   */
+  int getBidsSeen();
+
+  /**
+   * @return a number that changes every time the model is updated, so estimates derived from it can be cached
+   */
+  long getVersion();
+
+  /**
+   * @return a copy of the model as it is now, which does not change with later updates
+   */
+  OpponentModel snapshot();
+}
@@ -0,0 +1,175 @@
+package collabai.group76.opponent;
+
+import collabai.group76.util.BidStore;
+import collabai.group76.util.Clock;
+import java.util.Arrays;
+
+/**
+ * Pareto frontier of our best bids over our own utility and the opponent's estimated utility. The candidates are the
+ * best ranks of a {@link BidStore}, up to a fixed pool size, and the pool only grows as far as queries need it. Since
+ * the store is sorted on our utility, a bid is on the frontier exactly when its opponent utility beats that of every
+ * better ranked bid, and of every bid of equal utility, so the frontier is built in one scan and extended in place
+ * when the pool grows. For every frontier prefix the bid with the highest Nash product is kept, so the best joint bid
+ * above a utility is a binary search.
+ * <p>
+ * An update of a frequency model can change the estimate of every bid, so the frontier cannot be repaired point by
+ * point. Instead it is built on a snapshot of the model, which is only replaced when the model learned from a quarter
+ * more bids than the snapshot did. A session with n opponent bids therefore rebuilds the frontier O(log n) times
+ * instead of every turn, and between rebuilds the estimate lags the model by at most a quarter of its bids.
+ * <p>
+ * Queries can be given a deadline. Growing and scanning the pool then stops when it passes, the query is answered
+ * from the ranks scanned so far and the next query continues where this one stopped.
+ */
+public class ParetoFrontier {
+
+  //Number of ranks scanned between two looks at the clock, a power of two.
+  private static final int DEADLINE_CHECK = 64;
+  //Growth of the number of opponent bids the model learned from at which the frontier is rebuilt.
+  private static final double REBUILD_GROWTH = 0.25;
+
+  private final BidStore store;
+  private final OpponentModel model;
+  private final int maxPool;
+  private int poolSize;
+  //Snapshot of the model the frontier is built with, null before the first build.
+  private OpponentModel estimate;
+  //Number of pool ranks the frontier was built from.
+  private int scanned;
+  private int rebuilds;
+  private double bestOpponentUtility;
+  //Frontier points in rank order, so on descending own utility and increasing opponent utility.
+  private int[] ranks = new int[16];
+  private double[] utilities = new double[16];
+  //Position of the point with the highest Nash product among the first i + 1 points.
+  private int[] bestNash = new int[16];
+  private double[] bestNashProducts = new double[16];
+  private int size;
+
+  /**
+   * @param store   Our bids, best bid first
+   * @param model   The opponent model
+   * @param maxPool The largest number of our best bids considered
+   */
+  public ParetoFrontier(BidStore store, OpponentModel model, int maxPool) {
+    this.store = store;
+    this.model = model;
+    this.maxPool = maxPool;
+  }
+
+  /**
+   * Finds the frontier bid with our utility at least the given utility that maximizes the product of our utility and
+   * the opponent's estimated utility.
+   *
+   * @param utility The least utility for us
+   * @return the rank of the bid in the store, or -1 if none of the pool has the utility
+   */
+  public int bestJointRank(double utility) {
+    if (poolSize < maxPool) {
+      poolSize = Math.max(poolSize, Math.min(maxPool, store.countAtLeast(utility)));
+    }
+    update(null, 0);
+    return search(utility);
+  }
+
+  /**
+   * Like {@link #bestJointRank(double)}, but only considers the ranks that could be scanned before the deadline.
+   *
+   * @param utility  The least utility for us
+   * @param clock    The clock the deadline is on
+   * @param deadline The {@link Clock#nanoTime} at which to stop scanning
+   * @return the rank of the bid in the store, or -1 if none of the ranks scanned has the utility
+   */
+  public int bestJointRank(double utility, Clock clock, long deadline) {
+    if (poolSize < maxPool) {
+      poolSize = Math.max(poolSize, Math.min(maxPool, store.countAtLeast(utility, clock, deadline)));
+    }
+    update(clock, deadline);
+    return search(utility);
+  }
+
+  private int search(double utility) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (utilities[mid] >= utility) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low == 0 ? -1 : ranks[bestNash[low - 1]];
+  }
+
+  /**
+   * @return the number of bids on the frontier
+   */
+  public int size() {
+    update(null, 0);
+    return size;
+  }
+
+  /**
+   * @return the number of our best bids the frontier is built from
+   */
+  public int getPoolSize() {
+    return poolSize;
+  }
+
+  /**
+   * @return the number of times the frontier was built from scratch
+   */
+  public int getRebuilds() {
+    return rebuilds;
+  }
+
+  /**
+   * Rebuilds the frontier when the model learned from enough new bids, otherwise only scans the ranks the pool grew
+   * with.
+   *
+   * @param clock    The clock the deadline is on, null to scan the whole pool
+   * @param deadline The {@link Clock#nanoTime} at which to stop scanning
+   */
+  private void update(Clock clock, long deadline) {
+    if (estimate == null || model.getVersion() != estimate.getVersion() && model.getBidsSeen()
+          >= estimate.getBidsSeen() + Math.max(1, (int) (estimate.getBidsSeen() * REBUILD_GROWTH))) {
+      estimate = model.snapshot();
+      rebuilds++;
+      scanned = 0;
+      size = 0;
+      bestOpponentUtility = Double.NEGATIVE_INFINITY;
+    }
+    for (; scanned < poolSize; scanned++) {
+      if (clock != null && (scanned & (DEADLINE_CHECK - 1)) == 0 && clock.nanoTime() - deadline > 0) {
+        return;
+      }
+      double opponentUtility = estimate.utility(store.getBidId(scanned));
+      if (opponentUtility <= bestOpponentUtility) {
+        continue;
+      }
+      bestOpponentUtility = opponentUtility;
+      double utility = store.getUtility(scanned);
+      //Points of the same utility and a lower opponent utility are dominated by this one.
+      while (size > 0 && utilities[size - 1] == utility) {
+        size--;
+      }
+      if (size == ranks.length) {
+        ranks = Arrays.copyOf(ranks, size * 2);
+        utilities = Arrays.copyOf(utilities, size * 2);
+        bestNash = Arrays.copyOf(bestNash, size * 2);
+        bestNashProducts = Arrays.copyOf(bestNashProducts, size * 2);
+      }
+      ranks[size] = scanned;
+      utilities[size] = utility;
+      double nashProduct = utility * opponentUtility;
+      if (size > 0 && bestNashProducts[size - 1] >= nashProduct) {
+        bestNash[size] = bestNash[size - 1];
+        bestNashProducts[size] = bestNashProducts[size - 1];
+      } else {
+        bestNash[size] = size;
+        bestNashProducts[size] = nashProduct;
+      }
+      size++;
+    }
+  }
+}
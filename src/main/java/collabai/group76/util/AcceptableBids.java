@@ -0,0 +1,125 @@
+package collabai.group76.util;
+
+import geniusweb.issuevalue.Bid;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.LongPredicate;
+import java.util.function.LongToIntFunction;
+
+/**
+ * Index of the bids a profile accepts, partial bids included, built once per session. Acceptable bids are drawn from
+ * the index directly, so no turn has to keep drawing random bids until one happens to be acceptable. The index is
+ * ranked in two tiers: first the bids strictly preferred over no agreement, then those only as good as it, which a
+ * partial ordering can tell apart by comparing a bid with its reservation bid both ways.
+ */
+public class AcceptableBids {
+
+  //Tiers given to a bid when the index is built.
+  public static final int PREFERRED = 0;
+  public static final int EQUAL = 1;
+  public static final int UNACCEPTABLE = -1;
+
+  private final PartialBidCodec codec;
+  //Partial bid indices, the preferred bids at the ranks below preferred.
+  private final long[] bidIds;
+  private final int preferred;
+
+  private AcceptableBids(PartialBidCodec codec, long[] bidIds, int preferred) {
+    this.codec = codec;
+    this.bidIds = bidIds;
+    this.preferred = preferred;
+  }
+
+  /**
+   * Indexes the bids of a domain that pass a test, all in the preferred tier. See
+   * {@link #rank(PartialBidCodec, LongToIntFunction, int, SplittableRandom)}.
+   *
+   * @param codec      The partial bid codec of the domain
+   * @param acceptable Tests whether the bid with the given partial bid index is acceptable
+   * @param limit      The most bids that are tested
+   * @param random     The source of the drawn bids for large domains
+   * @return the index
+   */
+  public static AcceptableBids scan(PartialBidCodec codec, LongPredicate acceptable, int limit,
+                                    SplittableRandom random) {
+    return rank(codec, bidId -> acceptable.test(bidId) ? PREFERRED : UNACCEPTABLE, limit, random);
+  }
+
+  /**
+   * Ranks the bids of a domain into the two tiers. Domains of up to limit bids are ranked completely. Of larger
+   * domains limit uniformly drawn bids are ranked, the acceptable ones among them are then a uniform sample of the
+   * acceptable region.
+   *
+   * @param codec  The partial bid codec of the domain
+   * @param tier   Gives the tier of the bid with the given partial bid index: {@link #PREFERRED}, {@link #EQUAL} or
+   *               {@link #UNACCEPTABLE}
+   * @param limit  The most bids that are ranked
+   * @param random The source of the drawn bids for large domains
+   * @return the index
+   */
+  public static AcceptableBids rank(PartialBidCodec codec, LongToIntFunction tier, int limit,
+                                    SplittableRandom random) {
+    boolean complete = codec.size() <= limit;
+    long tests = complete ? codec.size() : limit;
+    long[][] tiers = {new long[64], new long[64]};
+    int[] sizes = new int[2];
+    for (long n = 0; n < tests; n++) {
+      long bidId = complete ? n : random.nextLong(codec.size());
+      int t = tier.applyAsInt(bidId);
+      if (t == PREFERRED || t == EQUAL) {
+        if (sizes[t] == tiers[t].length) {
+          tiers[t] = Arrays.copyOf(tiers[t], sizes[t] * 2);
+        }
+        tiers[t][sizes[t]++] = bidId;
+      }
+    }
+    long[] bidIds = Arrays.copyOf(tiers[PREFERRED], sizes[PREFERRED] + sizes[EQUAL]);
+    System.arraycopy(tiers[EQUAL], 0, bidIds, sizes[PREFERRED], sizes[EQUAL]);
+    return new AcceptableBids(codec, bidIds, sizes[PREFERRED]);
+  }
+
+  /**
+   * @return the number of indexed bids
+   */
+  public int size() {
+    return bidIds.length;
+  }
+
+  /**
+   * @return the number of indexed bids strictly preferred over no agreement, these have the ranks below it
+   */
+  public int preferred() {
+    return preferred;
+  }
+
+  /**
+   * @param rank The rank in the index
+   * @return the {@link PartialBidCodec} index of the bid
+   */
+  public long getBidId(int rank) {
+    return bidIds[rank];
+  }
+
+  /**
+   * @param random The source of the draw
+   * @return a uniformly drawn acceptable bid, or null if no bid is acceptable
+   */
+  public Bid draw(SplittableRandom random) {
+    if (bidIds.length == 0) {
+      return null;
+    }
+    return codec.decode(bidIds[random.nextInt(bidIds.length)]);
+  }
+
+  /**
+   * @param random The source of the draw
+   * @return a uniformly drawn bid strictly preferred over no agreement, or any acceptable bid if there is none such,
+   *       null if no bid is acceptable
+   */
+  public Bid drawPreferred(SplittableRandom random) {
+    if (preferred == 0) {
+      return draw(random);
+    }
+    return codec.decode(bidIds[random.nextInt(preferred)]);
+  }
+}
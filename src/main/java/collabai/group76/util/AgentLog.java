@@ -0,0 +1,93 @@
+package collabai.group76.util;
+
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import tudelft.utilities.logging.Reporter;
+
+/**
+ * Level guarded logging on top of a {@link Reporter}. Messages below the configured level are dropped before they are
+ * built: messages are given as suppliers or as templates with a single {} placeholder and a primitive argument, so a
+ * disabled log statement allocates nothing and evaluates nothing.
+ */
+public class AgentLog {
+
+  private static final String PLACEHOLDER = "{}";
+
+  private final Reporter reporter;
+  private final String prefix;
+  private final int threshold;
+
+  /**
+   * @param reporter The reporter to log to
+   * @param prefix   Text put in front of every message
+   * @param level    The lowest level that is logged
+   */
+  public AgentLog(Reporter reporter, String prefix, Level level) {
+    this.reporter = reporter;
+    this.prefix = prefix;
+    this.threshold = level.intValue();
+  }
+
+  /**
+   * @param level The level to check
+   * @return true if messages of the level are logged
+   */
+  public boolean isLoggable(Level level) {
+    return level.intValue() >= threshold && threshold != Level.OFF.intValue();
+  }
+
+  public void log(Level level, String message) {
+    if (isLoggable(level)) {
+      reporter.log(level, prefix + message);
+    }
+  }
+
+  public void log(Level level, String message, Throwable thrown) {
+    if (isLoggable(level)) {
+      reporter.log(level, prefix + message, thrown);
+    }
+  }
+
+  public void log(Level level, Supplier<String> message) {
+    if (isLoggable(level)) {
+      reporter.log(level, prefix + message.get());
+    }
+  }
+
+  public void log(Level level, String template, double argument) {
+    if (isLoggable(level)) {
+      reporter.log(level, format(template, String.valueOf(argument)));
+    }
+  }
+
+  public void log(Level level, String template, long argument) {
+    if (isLoggable(level)) {
+      reporter.log(level, format(template, String.valueOf(argument)));
+    }
+  }
+
+  public void log(Level level, String template, boolean argument) {
+    if (isLoggable(level)) {
+      reporter.log(level, format(template, String.valueOf(argument)));
+    }
+  }
+
+  public void log(Level level, String template, Object argument) {
+    if (isLoggable(level)) {
+      reporter.log(level, format(template, String.valueOf(argument)));
+    }
+  }
+
+  private String format(String template, String argument) {
+    int at = template.indexOf(PLACEHOLDER);
+    if (at < 0) {
+      return prefix + template + argument;
+    }
+    return new StringBuilder(prefix.length() + template.length() + argument.length())
+          .append(prefix)
+          .append(template, 0, at)
+          .append(argument)
+          .append(template, at + PLACEHOLDER.length(), template.length())
+          .toString();
+  }
+}
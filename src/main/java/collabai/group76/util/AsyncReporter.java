@@ -0,0 +1,100 @@
+package collabai.group76.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import tudelft.utilities.logging.Reporter;
+
+/**
+ * Reporter that hands messages to a bounded ring buffer and writes them to the wrapped reporter on a background
+ * thread, so the negotiation thread never waits on log I/O. When the buffer is full messages are dropped and counted
+ * rather than blocking the caller.
+ */
+public class AsyncReporter implements Reporter {
+
+  private static final long CLOSE_TIMEOUT_MS = 1000;
+
+  private final Reporter delegate;
+  private final BlockingQueue<Entry> buffer;
+  private final LongAdder dropped = new LongAdder();
+  private final Thread writer;
+  private volatile boolean closed;
+
+  /**
+   * @param delegate The reporter that does the actual writing
+   * @param capacity The number of messages that can wait to be written
+   */
+  public AsyncReporter(Reporter delegate, int capacity) {
+    this.delegate = delegate;
+    this.buffer = new ArrayBlockingQueue<>(capacity);
+    this.writer = new Thread(this::drain, "group76-log-writer");
+    this.writer.setDaemon(true);
+    this.writer.start();
+  }
+
+  @Override
+  public void log(Level level, String msg) {
+    log(level, msg, null);
+  }
+
+  @Override
+  public void log(Level level, String msg, Throwable thrown) {
+    if (closed || !buffer.offer(new Entry(level, msg, thrown))) {
+      dropped.increment();
+    }
+  }
+
+  /**
+   * @return the number of messages dropped because the buffer was full or the reporter closed
+   */
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  /**
+   * Writes the messages still waiting and stops the background thread.
+   */
+  public void close() {
+    closed = true;
+    writer.interrupt();
+    try {
+      writer.join(CLOSE_TIMEOUT_MS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void drain() {
+    while (!closed || !buffer.isEmpty()) {
+      Entry entry;
+      try {
+        entry = buffer.poll(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        //Closing, write what is left.
+        entry = buffer.poll();
+      }
+      if (entry == null) {
+        continue;
+      }
+      if (entry.thrown == null) {
+        delegate.log(entry.level, entry.message);
+      } else {
+        delegate.log(entry.level, entry.message, entry.thrown);
+      }
+    }
+  }
+
+  private static class Entry {
+    final Level level;
+    final String message;
+    final Throwable thrown;
+
+    Entry(Level level, String message, Throwable thrown) {
+      this.level = level;
+      this.message = message;
+      this.thrown = thrown;
+    }
+  }
+}
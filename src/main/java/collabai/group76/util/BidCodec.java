@@ -0,0 +1,179 @@
+package collabai.group76.util;
+
+import geniusweb.issuevalue.Bid;
+import geniusweb.issuevalue.Domain;
+import geniusweb.issuevalue.Value;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Maps every complete bid of a domain to a dense index in [0, size) and back. The index is a mixed radix number with
+ * one digit per issue (issues sorted on name, the last issue being the least significant digit) where each digit is
+ * the position of the value in the issue's value set. This lets the agent keep bids as longs and only build
+ * {@link Bid} objects when they are sent.
+ */
+public class BidCodec {
+
+  //Index returned for bids that are not complete bids of the domain.
+  public static final long NONE = -1;
+
+  private final Domain domain;
+  private final String[] issues;
+  private final Value[][] values;
+  private final List<Map<Value, Integer>> ordinals;
+  //Weight of each digit in the index.
+  private final long[] strides;
+  private final long size;
+
+  /**
+   * @param domain The domain to encode the bids of
+   * @throws IllegalArgumentException if the number of bids does not fit in a long
+   */
+  public BidCodec(Domain domain) {
+    this.domain = domain;
+    this.issues = new TreeSet<>(domain.getIssues()).toArray(new String[0]);
+    this.values = new Value[issues.length][];
+    this.ordinals = new ArrayList<>();
+    this.strides = new long[issues.length];
+    for (int i = 0; i < issues.length; i++) {
+      List<Value> issueValues = new ArrayList<>();
+      Map<Value, Integer> issueOrdinals = new HashMap<>();
+      for (Value value : domain.getValues(issues[i])) {
+        issueOrdinals.put(value, issueValues.size());
+        issueValues.add(value);
+      }
+      values[i] = issueValues.toArray(new Value[0]);
+      ordinals.add(issueOrdinals);
+    }
+    long product = 1;
+    try {
+      for (int i = issues.length - 1; i >= 0; i--) {
+        strides[i] = product;
+        product = Math.multiplyExact(product, values[i].length);
+      }
+    } catch (ArithmeticException e) {
+      throw new IllegalArgumentException("Domain " + domain.getName() + " has too many bids to index", e);
+    }
+    this.size = product;
+  }
+
+  /**
+   * @return the domain of this codec
+   */
+  public Domain getDomain() {
+    return domain;
+  }
+
+  /**
+   * @return the number of complete bids in the domain
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * @return the number of issues
+   */
+  public int issueCount() {
+    return issues.length;
+  }
+
+  /**
+   * @param issue The issue number
+   * @return the name of the issue
+   */
+  public String getIssue(int issue) {
+    return issues[issue];
+  }
+
+  /**
+   * @param issue The issue number
+   * @return the number of values of the issue
+   */
+  public int valueCount(int issue) {
+    return values[issue].length;
+  }
+
+  /**
+   * @param issue   The issue number
+   * @param ordinal The position of the value in the issue's value set
+   * @return the value
+   */
+  public Value getValue(int issue, int ordinal) {
+    return values[issue][ordinal];
+  }
+
+  /**
+   * @param issue The issue number
+   * @param value The value to look up
+   * @return the position of the value in the issue's value set, or -1 if the value is not in it
+   */
+  public int ordinal(int issue, Value value) {
+    Integer ordinal = ordinals.get(issue).get(value);
+    return ordinal == null ? -1 : ordinal;
+  }
+
+  /**
+   * @param index The bid index
+   * @param issue The issue number
+   * @return the value ordinal of the issue in the bid with the given index
+   */
+  public int digit(long index, int issue) {
+    return (int) ((index / strides[issue]) % values[issue].length);
+  }
+
+  /**
+   * @param issue The issue number
+   * @return the amount the index changes when the value ordinal of the issue increases by one
+   */
+  public long stride(int issue) {
+    return strides[issue];
+  }
+
+  /**
+   * @param bid The bid to encode
+   * @return the index of the bid, or {@link #NONE} if it is not a complete bid of the domain
+   */
+  public long encode(Bid bid) {
+    long index = 0;
+    for (int i = 0; i < issues.length; i++) {
+      Value value = bid.getValue(issues[i]);
+      int ordinal = value == null ? -1 : ordinal(i, value);
+      if (ordinal < 0) {
+        return NONE;
+      }
+      index += ordinal * strides[i];
+    }
+    return index;
+  }
+
+  /**
+   * @param digits The value ordinal of every issue
+   * @return the index of the bid with the given values
+   */
+  public long encode(int[] digits) {
+    long index = 0;
+    for (int i = 0; i < issues.length; i++) {
+      index += digits[i] * strides[i];
+    }
+    return index;
+  }
+
+  /**
+   * @param index The bid index
+   * @return the bid with the given index
+   */
+  public Bid decode(long index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Bid index " + index + " out of range [0, " + size + ")");
+    }
+    Map<String, Value> issueValues = new HashMap<>();
+    for (int i = 0; i < issues.length; i++) {
+      issueValues.put(issues[i], values[i][digit(index, i)]);
+    }
+    return new Bid(issueValues);
+  }
+}
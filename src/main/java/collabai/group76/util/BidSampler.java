@@ -0,0 +1,114 @@
+package collabai.group76.util;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Draws random bids from a utility range of a {@link BidStore} without building a list of the bids in the range. As
+ * the store is sorted on utility, every range is a range of ranks: a uniform draw takes O(1) once the range is known,
+ * and O(log n) to find the range from a utility. Draws weighted by utility use prefix sums over the ranks, which are
+ * built once up to the deepest rank asked for, and take O(log n). The random generator is passed in so a session can
+ * be reproduced from its seed.
+ */
+public class BidSampler {
+
+  private final BidStore store;
+  private final SplittableRandom random;
+  //Sum of the utilities of the ranks up to and including every position.
+  private double[] prefixSums = new double[0];
+  private int summed;
+
+  /**
+   * @param store  The store to draw from
+   * @param random The random generator to draw with
+   */
+  public BidSampler(BidStore store, SplittableRandom random) {
+    this.store = store;
+    this.random = random;
+  }
+
+  /**
+   * @param count The number of best ranks to draw from, must be positive
+   * @return a rank drawn uniformly from [0, count)
+   */
+  public int uniformRankBelow(int count) {
+    return random.nextInt(count);
+  }
+
+  /**
+   * @param minUtility The least utility of the drawn bid
+   * @return a rank drawn uniformly from the bids with at least the utility, or -1 if there are none
+   */
+  public int uniformRankAtLeast(double minUtility) {
+    int count = store.countAtLeast(minUtility);
+    return count == 0 ? -1 : random.nextInt(count);
+  }
+
+  /**
+   * @param minUtility The least utility of the drawn bid
+   * @param maxUtility The most utility of the drawn bid
+   * @return a rank drawn uniformly from the bids with a utility in [minUtility, maxUtility], or -1 if there are none
+   */
+  public int uniformRankBetween(double minUtility, double maxUtility) {
+    int from = store.countAtLeast(Math.nextUp(maxUtility));
+    int to = store.countAtLeast(minUtility);
+    return from >= to ? -1 : from + random.nextInt(to - from);
+  }
+
+  /**
+   * Draws one of the best ranks with a probability proportional to its utility, so better bids come up more often.
+   *
+   * @param count The number of best ranks to draw from, must be positive
+   * @return the drawn rank
+   */
+  public int weightedRankBelow(int count) {
+    sumUpTo(count);
+    double total = prefixSums[count - 1];
+    if (total <= 0) {
+      return random.nextInt(count);
+    }
+    double target = random.nextDouble() * total;
+    int low = 0;
+    int high = count - 1;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (prefixSums[mid] > target) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @param minUtility The least utility of the drawn bid
+   * @return a rank drawn from the bids with at least the utility weighted by utility, or -1 if there are none
+   */
+  public int weightedRankAtLeast(double minUtility) {
+    int count = store.countAtLeast(minUtility);
+    return count == 0 ? -1 : weightedRankBelow(count);
+  }
+
+  /**
+   * @return a boolean drawn with equal chances, from the same generator as the ranks
+   */
+  public boolean nextBoolean() {
+    return random.nextBoolean();
+  }
+
+  private void sumUpTo(int count) {
+    if (count <= summed) {
+      return;
+    }
+    if (count > prefixSums.length) {
+      prefixSums = Arrays.copyOf(prefixSums, Math.max(count, prefixSums.length * 2));
+    }
+    double sum = summed == 0 ? 0 : prefixSums[summed - 1];
+    for (; summed < count; summed++) {
+      //Negative utilities would break the prefix order, they get no weight.
+      sum += Math.max(0, store.getUtility(summed));
+      prefixSums[summed] = sum;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package collabai.group76.util;
+
+import geniusweb.issuevalue.Bid;
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Bids of a domain ordered on descending utility, rank 0 being the best bid. Implementations either hold the whole bid
+ * space in memory or generate it on demand.
+ */
+public interface BidStore {
+
+  /**
+   * @param rank The rank of the bid, 0 being the best bid
+   * @return the {@link BidCodec} index of the bid at the given rank
+   */
+  long getBidId(int rank);
+
+  /**
+   * @param rank The rank of the bid, 0 being the best bid
+   * @return the bid at the given rank
+   */
+  Bid getBid(int rank);
+
+  /**
+   * @param rank The rank of the bid, 0 being the best bid
+   * @return the utility of the bid at the given rank
+   */
+  double getUtility(int rank);
+
+  /**
+   * Counts the bids of utility greater than or equal to the given utility. These are exactly the bids of rank 0 up to
+   * (excluding) the returned count.
+   *
+   * @param utility The minimum utility
+   * @return number of bids with at least the given utility
+   */
+  int countAtLeast(double utility);
+
+  /**
+   * Counts the bids of utility greater than or equal to the given utility, giving up when the deadline passes. A store
+   * that has to do work to count may then return fewer bids than there are, but always the best ranks, so the result
+   * is valid for sampling. The default counts without a deadline.
+   *
+   * @param utility  The minimum utility
+   * @param clock    The clock the deadline is on
+   * @param deadline The {@link Clock#nanoTime} at which to stop counting
+   * @return number of bids with at least the given utility found before the deadline
+   */
+  default int countAtLeast(double utility, Clock clock, long deadline) {
+    return countAtLeast(utility);
+  }
+
+  /**
+   * @param utility The minimum utility
+   * @return true if {@link #countAtLeast(double)} of the utility is answered without more work, which the default
+   *       assumes
+   */
+  default boolean isCounted(double utility) {
+    return true;
+  }
+
+  /**
+   * Finds the best bid of utility less than or equal to the given utility.
+   *
+   * @param utility The maximum utility
+   * @return the rank of that bid, or -1 if no such bid is available
+   */
+  int floorRank(double utility);
+
+  /**
+   * Gives a read only view on all the bids of utility greater than or equal to the given utility, best bid first.
+   * The bids are only built when they are read from the view.
+   *
+   * @param utility The minimum utility
+   * @return view on the matching bids
+   */
+  default List<Bid> bidsAtLeast(double utility) {
+    int count = countAtLeast(utility);
+    return new AbstractList<Bid>() {
+      @Override
+      public Bid get(int rank) {
+        if (rank < 0 || rank >= count) {
+          throw new IndexOutOfBoundsException("Rank " + rank + " out of range [0, " + count + ")");
+        }
+        return getBid(rank);
+      }
+
+      @Override
+      public int size() {
+        return count;
+      }
+    };
+  }
+}
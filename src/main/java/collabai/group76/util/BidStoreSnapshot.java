@@ -0,0 +1,174 @@
+package collabai.group76.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes the sorted bid space of a profile as a binary file, so a new JVM can map it instead of scoring and
+ * sorting every bid again. The file starts with a header holding a magic number, the format version, the
+ * {@link LinearAdditiveEvaluator#fingerprint() fingerprint} of the profile, the number of bids and a CRC32 of the
+ * rest of the file, followed by the bid indices and then the utilities, best bid first. Loading reads the whole file
+ * once to check the CRC32, which is a sequential pass over the mapped pages instead of scoring and sorting every bid.
+ */
+public class BidStoreSnapshot {
+
+  private static final int MAGIC = 0x47373642;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 32;
+  private static final int WRITE_BUFFER_SIZE = 1 << 16;
+  //Number of bids whose utility is checked against the evaluator when loading.
+  private static final int SPOT_CHECKS = 64;
+  private static final double TOLERANCE = 1e-12;
+
+  private BidStoreSnapshot() {
+  }
+
+  /**
+   * @param directory   The directory holding the snapshots
+   * @param evaluator   The evaluator of the profile
+   * @param fingerprint The fingerprint of the profile
+   * @return the path of the profile's snapshot
+   */
+  public static Path path(Path directory, LinearAdditiveEvaluator evaluator, long fingerprint) {
+    String domain = evaluator.getCodec().getDomain().getName().replaceAll("[^A-Za-z0-9._-]", "_");
+    return directory.resolve(domain + "-" + Long.toHexString(fingerprint) + ".bids");
+  }
+
+  /**
+   * Writes a store to a temporary file next to the snapshot and then moves it in place, so readers never see a
+   * partially written snapshot.
+   *
+   * @param file        The snapshot file
+   * @param store       The store to write
+   * @param fingerprint The fingerprint of the profile
+   * @throws IOException if the file cannot be written
+   */
+  public static void write(Path file, SortedBidStore store, long fingerprint) throws IOException {
+    Path directory = file.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        channel.position(HEADER_SIZE);
+        for (int rank = 0; rank < store.size(); rank++) {
+          if (buffer.remaining() < Long.BYTES) {
+            flush(channel, buffer, crc);
+          }
+          buffer.putLong(store.getBidId(rank));
+        }
+        for (int rank = 0; rank < store.size(); rank++) {
+          if (buffer.remaining() < Double.BYTES) {
+            flush(channel, buffer, crc);
+          }
+          buffer.putDouble(store.getUtility(rank));
+        }
+        flush(channel, buffer, crc);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(fingerprint).putLong(store.size()).putLong(crc.getValue());
+        buffer.flip();
+        channel.write(buffer, 0);
+        channel.force(true);
+      }
+      try {
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private static void flush(FileChannel channel, ByteBuffer buffer, CRC32 crc) throws IOException {
+    buffer.flip();
+    crc.update(buffer.duplicate());
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Maps a snapshot read only and validates it: the header must match the profile and the bid space, the checksum
+   * must match the contents, and a sample of the bids must be sorted and have the utility the evaluator gives them.
+   *
+   * @param file        The snapshot file
+   * @param evaluator   The evaluator of the profile
+   * @param fingerprint The fingerprint of the profile
+   * @return the mapped store, or null if there is no snapshot
+   * @throws IOException if the snapshot cannot be read, is corrupt or belongs to another profile
+   */
+  public static MappedBidStore load(Path file, LinearAdditiveEvaluator evaluator, long fingerprint)
+        throws IOException {
+    BidCodec codec = evaluator.getCodec();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      while (header.hasRemaining() && channel.read(header) >= 0) {
+        //Read until the header is complete or the file ends.
+      }
+      header.flip();
+      if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+        throw new IOException("Not a bid store snapshot: " + file);
+      }
+      if (header.getInt() != VERSION) {
+        throw new IOException("Unsupported snapshot version: " + file);
+      }
+      if (header.getLong() != fingerprint) {
+        throw new IOException("Snapshot belongs to another profile: " + file);
+      }
+      long count = header.getLong();
+      long checksum = header.getLong();
+      if (count != codec.size() || count > Integer.MAX_VALUE / Long.BYTES) {
+        throw new IOException("Snapshot holds " + count + " bids instead of " + codec.size() + ": " + file);
+      }
+      long sectionSize = count * Long.BYTES;
+      if (channel.size() != HEADER_SIZE + 2 * sectionSize) {
+        throw new IOException("Snapshot has size " + channel.size() + " instead of "
+              + (HEADER_SIZE + 2 * sectionSize) + ": " + file);
+      }
+      MappedByteBuffer ids = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, sectionSize);
+      MappedByteBuffer utils = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + sectionSize, sectionSize);
+      CRC32 crc = new CRC32();
+      crc.update(ids.duplicate());
+      crc.update(utils.duplicate());
+      if (crc.getValue() != checksum) {
+        throw new IOException("Snapshot checksum mismatch: " + file);
+      }
+      MappedBidStore store = new MappedBidStore(codec, ids.asLongBuffer(), utils.asDoubleBuffer());
+      spotCheck(store, evaluator, file);
+      return store;
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Checks bids spread evenly over the store, which catches snapshots written by a different version of the codec or
+   * evaluator that still happen to have a matching fingerprint.
+   */
+  private static void spotCheck(MappedBidStore store, LinearAdditiveEvaluator evaluator, Path file)
+        throws IOException {
+    int size = store.size();
+    int step = Math.max(1, size / SPOT_CHECKS);
+    double previous = Double.POSITIVE_INFINITY;
+    for (int rank = 0; rank < size; rank += step) {
+      long bidId = store.getBidId(rank);
+      double utility = store.getUtility(rank);
+      if (bidId < 0 || bidId >= evaluator.getCodec().size() || utility > previous
+            || Math.abs(evaluator.utility(bidId) - utility) > TOLERANCE) {
+        throw new IOException("Snapshot does not match the profile at rank " + rank + ": " + file);
+      }
+      previous = utility;
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package collabai.group76.util;
+
+/**
+ * Source of the current time for the decisions of a session. Parties read the system clock, a replay reads the times
+ * recorded in a journal so the session makes the same decisions again.
+ */
+public interface Clock {
+
+  /**
+   * The clock of the JVM.
+   */
+  Clock SYSTEM = new Clock() {
+    @Override
+    public long millis() {
+      return System.currentTimeMillis();
+    }
+
+    @Override
+    public long nanoTime() {
+      return System.nanoTime();
+    }
+  };
+
+  /**
+   * @return the wall clock time in milliseconds, as {@link System#currentTimeMillis()}
+   */
+  long millis();
+
+  /**
+   * @return the time in nanoseconds for measuring elapsed time, as {@link System#nanoTime()}
+   */
+  long nanoTime();
+}
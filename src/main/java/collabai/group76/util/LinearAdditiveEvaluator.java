@@ -0,0 +1,213 @@
+package collabai.group76.util;
+
+import geniusweb.issuevalue.Bid;
+import geniusweb.issuevalue.Value;
+import geniusweb.profile.utilityspace.LinearAdditive;
+import geniusweb.profile.utilityspace.UtilitySpace;
+import geniusweb.profile.utilityspace.ValueSetUtilities;
+
+/**
+ * Utility function of a {@link LinearAdditive} profile compiled to a primitive table. Every issue weight is multiplied
+ * into the utilities of the issue's values once, so evaluating a bid is a sum of one table lookup per issue instead of
+ * BigDecimal arithmetic and map lookups. Bids can be given as {@link Bid} objects or as {@link BidCodec} indices, and
+ * ranges of indices can be scored in one batch.
+ */
+public class LinearAdditiveEvaluator {
+
+  private final BidCodec codec;
+  //Weighted utility indexed by issue number and value ordinal.
+  private final double[][] table;
+
+  /**
+   * @param codec   The codec of the profile's domain
+   * @param profile The profile to compile
+   */
+  public LinearAdditiveEvaluator(BidCodec codec, LinearAdditive profile) {
+    this.codec = codec;
+    this.table = new double[codec.issueCount()][];
+    for (int i = 0; i < table.length; i++) {
+      String issue = codec.getIssue(i);
+      ValueSetUtilities utilities = profile.getUtilities().get(issue);
+      table[i] = new double[codec.valueCount(i)];
+      for (int v = 0; v < table[i].length; v++) {
+        table[i][v] = profile.getWeight(issue).multiply(utilities.getUtility(codec.getValue(i, v))).doubleValue();
+      }
+    }
+  }
+
+  /**
+   * @return the codec used for the bid indices
+   */
+  public BidCodec getCodec() {
+    return codec;
+  }
+
+  /**
+   * @param issue   The issue number
+   * @param ordinal The value ordinal
+   * @return the weighted utility the value adds to a bid
+   */
+  public double contribution(int issue, int ordinal) {
+    return table[issue][ordinal];
+  }
+
+  /**
+   * Evaluates a bid, adding the issues up in the same order as {@link #utilitiesOfRange} so both give exactly the same
+   * utility.
+   *
+   * @param bidId The bid index
+   * @return the utility of the bid
+   */
+  public double utility(long bidId) {
+    double utility = 0;
+    for (int i = 0; i < table.length; i++) {
+      utility += table[i][codec.digit(bidId, i)];
+    }
+    return utility;
+  }
+
+  /**
+   * Evaluates a bid that may be partial, issues without a value add nothing to the utility.
+   *
+   * @param bid The bid
+   * @return the utility of the bid
+   */
+  public double utility(Bid bid) {
+    double utility = 0;
+    for (int i = 0; i < table.length; i++) {
+      Value value = bid.getValue(codec.getIssue(i));
+      int ordinal = value == null ? -1 : codec.ordinal(i, value);
+      if (ordinal >= 0) {
+        utility += table[i][ordinal];
+      }
+    }
+    return utility;
+  }
+
+  /**
+   * Scores a batch of bids.
+   *
+   * @param bidIds    The bid indices
+   * @param utilities Receives the utility of every bid, at the same position
+   */
+  public void utilities(long[] bidIds, double[] utilities) {
+    for (int i = 0; i < bidIds.length; i++) {
+      utilities[i] = utility(bidIds[i]);
+    }
+  }
+
+  /**
+   * Scores the consecutive bid indices firstId up to firstId + count. The value ordinals are stepped like an odometer,
+   * so apart from the first bid no divisions are needed.
+   *
+   * @param firstId   The first bid index
+   * @param count     The number of bids
+   * @param utilities Receives the utility of bid firstId + i at position offset + i
+   * @param offset    The position of the first utility
+   */
+  public void utilitiesOfRange(long firstId, int count, double[] utilities, int offset) {
+    if (count <= 0) {
+      return;
+    }
+    int issues = table.length;
+    int[] digits = new int[issues];
+    double[] partial = new double[issues + 1];
+    for (int i = 0; i < issues; i++) {
+      digits[i] = codec.digit(firstId, i);
+      partial[i + 1] = partial[i] + table[i][digits[i]];
+    }
+    int last = issues - 1;
+    for (int n = 0; n < count; n++) {
+      utilities[offset + n] = partial[issues];
+      //Step to the next index, carrying over to the more significant issues.
+      int i = last;
+      while (i >= 0 && ++digits[i] == table[i].length) {
+        digits[i] = 0;
+        i--;
+      }
+      for (int j = Math.max(i, 0); j < issues; j++) {
+        partial[j + 1] = partial[j] + table[j][digits[j]];
+      }
+    }
+  }
+
+  /**
+   * Compares the compiled utilities with those of another profile of the same domain.
+   *
+   * @param other The evaluator of the other profile
+   * @return for every issue which value ordinals have a different weighted utility, null for issues that did not change
+   * @throws IllegalArgumentException if the other profile is of another domain
+   */
+  public boolean[][] changedValues(LinearAdditiveEvaluator other) {
+    if (!codec.getDomain().equals(other.codec.getDomain())) {
+      throw new IllegalArgumentException("Profiles of different domains cannot be compared");
+    }
+    boolean[][] changed = new boolean[table.length][];
+    for (int i = 0; i < table.length; i++) {
+      for (int v = 0; v < table[i].length; v++) {
+        if (Double.doubleToLongBits(table[i][v]) != Double.doubleToLongBits(other.table[i][v])) {
+          if (changed[i] == null) {
+            changed[i] = new boolean[table[i].length];
+          }
+          changed[i][v] = true;
+        }
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Hashes the domain and the compiled utilities with 64 bit FNV-1a. Equal profiles give the same fingerprint in every
+   * JVM, so it can identify a profile's precomputed data across sessions.
+   *
+   * @return the fingerprint of the profile
+   */
+  public long fingerprint() {
+    long hash = 0xcbf29ce484222325L;
+    hash = fnv(hash, codec.getDomain().getName());
+    for (int i = 0; i < table.length; i++) {
+      hash = fnv(hash, codec.getIssue(i));
+      for (int v = 0; v < table[i].length; v++) {
+        hash = fnv(hash, String.valueOf(codec.getValue(i, v)));
+        hash = fnv(hash, Double.doubleToLongBits(table[i][v]));
+      }
+    }
+    return hash;
+  }
+
+  private static long fnv(long hash, String text) {
+    long result = hash;
+    for (int i = 0; i < text.length(); i++) {
+      result = (result ^ text.charAt(i)) * 0x100000001b3L;
+    }
+    //Separator, so "ab"+"c" and "a"+"bc" differ.
+    return (result ^ 0xff) * 0x100000001b3L;
+  }
+
+  private static long fnv(long hash, long bits) {
+    long result = hash;
+    for (int shift = 0; shift < 64; shift += 8) {
+      result = (result ^ ((bits >>> shift) & 0xff)) * 0x100000001b3L;
+    }
+    return result;
+  }
+
+  /**
+   * Checks the compiled utilities of the given bids against the evaluation of the profile itself.
+   *
+   * @param profile   The profile this evaluator was compiled from
+   * @param bidIds    The bids to check
+   * @param tolerance The largest difference allowed
+   * @throws IllegalStateException if a bid's utility differs more than the tolerance
+   */
+  public void verify(UtilitySpace profile, long[] bidIds, double tolerance) {
+    for (long bidId : bidIds) {
+      Bid bid = codec.decode(bidId);
+      double expected = profile.getUtility(bid).doubleValue();
+      double actual = utility(bidId);
+      if (Math.abs(expected - actual) > tolerance || Math.abs(expected - utility(bid)) > tolerance) {
+        throw new IllegalStateException("Compiled utility " + actual + " of bid " + bid + " differs from " + expected);
+      }
+    }
+  }
+}
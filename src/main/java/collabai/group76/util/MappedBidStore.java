@@ -0,0 +1,82 @@
+package collabai.group76.util;
+
+import geniusweb.issuevalue.Bid;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Sorted bid store backed by a memory mapped {@link BidStoreSnapshot} file. The bid indices and utilities stay in the
+ * page cache instead of the heap, so opening a store costs one checksum pass over the file when it is loaded but no
+ * heap copy and no sorting. Like {@link SortedBidStore} it is immutable, rank 0 being the best bid.
+ */
+public class MappedBidStore implements BidStore {
+
+  private final BidCodec codec;
+  private final LongBuffer bidIds;
+  private final DoubleBuffer utilities;
+  private final int size;
+
+  /**
+   * @param codec     The codec of the domain
+   * @param bidIds    The bid indices, best bid first
+   * @param utilities The utility of every bid, at the same position
+   */
+  MappedBidStore(BidCodec codec, LongBuffer bidIds, DoubleBuffer utilities) {
+    this.codec = codec;
+    this.bidIds = bidIds;
+    this.utilities = utilities;
+    this.size = bidIds.limit();
+  }
+
+  /**
+   * @return the number of bids in the store
+   */
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public long getBidId(int rank) {
+    return bidIds.get(rank);
+  }
+
+  @Override
+  public Bid getBid(int rank) {
+    return codec.decode(bidIds.get(rank));
+  }
+
+  @Override
+  public double getUtility(int rank) {
+    return utilities.get(rank);
+  }
+
+  @Override
+  public int countAtLeast(double utility) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (utilities.get(mid) >= utility) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  @Override
+  public int floorRank(double utility) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (utilities.get(mid) > utility) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low < size ? low : -1;
+  }
+}
@@ -0,0 +1,99 @@
+package collabai.group76.util;
+
+import geniusweb.issuevalue.Bid;
+import geniusweb.issuevalue.Value;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps every partial bid of a domain, complete bids included, to a dense index in [0, size) and back. It is the
+ * {@link BidCodec} index with one more value per issue: digit 0 leaves the issue out of the bid and digit d + 1 is the
+ * value of ordinal d. Only the empty bid, with every digit 0, is not a bid, so the index is that number minus one.
+ */
+public class PartialBidCodec {
+
+  private final BidCodec codec;
+  //Weight of each digit in the index.
+  private final long[] strides;
+  private final long size;
+
+  /**
+   * @param codec The codec of the complete bids of the domain
+   * @throws IllegalArgumentException if the number of partial bids does not fit in a long
+   */
+  public PartialBidCodec(BidCodec codec) {
+    this.codec = codec;
+    this.strides = new long[codec.issueCount()];
+    long product = 1;
+    try {
+      for (int i = strides.length - 1; i >= 0; i--) {
+        strides[i] = product;
+        product = Math.multiplyExact(product, codec.valueCount(i) + 1);
+      }
+    } catch (ArithmeticException e) {
+      throw new IllegalArgumentException("Domain " + codec.getDomain().getName() + " has too many partial bids to index",
+            e);
+    }
+    this.size = product - 1;
+  }
+
+  /**
+   * @return the codec of the complete bids
+   */
+  public BidCodec getCodec() {
+    return codec;
+  }
+
+  /**
+   * @return the number of partial and complete bids in the domain
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * @param index The partial bid index
+   * @param issue The issue number
+   * @return the value ordinal of the issue in the bid with the given index, or -1 if the bid leaves the issue out
+   */
+  public int ordinal(long index, int issue) {
+    return (int) (((index + 1) / strides[issue]) % (codec.valueCount(issue) + 1)) - 1;
+  }
+
+  /**
+   * @param bid The bid to encode
+   * @return the index of the bid, or {@link BidCodec#NONE} if it has a value that is not in the domain or no values
+   */
+  public long encode(Bid bid) {
+    long index = 0;
+    for (int i = 0; i < strides.length; i++) {
+      Value value = bid.getValue(codec.getIssue(i));
+      if (value != null) {
+        int ordinal = codec.ordinal(i, value);
+        if (ordinal < 0) {
+          return BidCodec.NONE;
+        }
+        index += (ordinal + 1) * strides[i];
+      }
+    }
+    return index == 0 ? BidCodec.NONE : index - 1;
+  }
+
+  /**
+   * @param index The partial bid index
+   * @return the bid with the given index
+   */
+  public Bid decode(long index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Partial bid index " + index + " out of range [0, " + size + ")");
+    }
+    Map<String, Value> issueValues = new HashMap<>();
+    for (int i = 0; i < strides.length; i++) {
+      int ordinal = ordinal(index, i);
+      if (ordinal >= 0) {
+        issueValues.put(codec.getIssue(i), codec.getValue(i, ordinal));
+      }
+    }
+    return new Bid(issueValues);
+  }
+}
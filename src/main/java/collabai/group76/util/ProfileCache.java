@@ -0,0 +1,152 @@
+package collabai.group76.util;
+
+import geniusweb.profile.Profile;
+import java.net.URI;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Process wide cache of the precomputed data of a profile: its codec, compiled evaluator and sorted bid store
+ * ({@link SortedBidStore} or {@link MappedBidStore}). When many sessions run on the same profile, only the first one
+ * pays for scoring and sorting the bid space. Entries are keyed by profile URI and a hash of the profile contents, and
+ * evicted least recently used first when the cache holds too many entries or too many bids in total. Everything in an
+ * entry is immutable, so sessions can share it.
+ */
+public class ProfileCache {
+
+  private static final ProfileCache SHARED = new ProfileCache(
+        Integer.getInteger("group76.cache.maxEntries", 16),
+        Long.getLong("group76.cache.maxBids", 20000000L));
+
+  private final int maxEntries;
+  private final long maxBids;
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long bids;
+
+  /**
+   * @param maxEntries The largest number of profiles kept
+   * @param maxBids    The largest number of bids kept over all stores
+   */
+  public ProfileCache(int maxEntries, long maxBids) {
+    this.maxEntries = maxEntries;
+    this.maxBids = maxBids;
+  }
+
+  /**
+   * @return the cache shared by all sessions in this JVM, bounded by the group76.cache.maxEntries and
+   * group76.cache.maxBids system properties
+   */
+  public static ProfileCache shared() {
+    return SHARED;
+  }
+
+  /**
+   * @param profileUri  The URI the profile was fetched from
+   * @param fingerprint The hash of the profile contents
+   * @return the cache key
+   */
+  public static String key(URI profileUri, long fingerprint) {
+    return profileUri + "#" + Long.toHexString(fingerprint);
+  }
+
+  /**
+   * @param key     The cache key
+   * @param profile The profile the entry must have been built for
+   * @return the entry, or null if there is none for this exact profile
+   */
+  public synchronized Entry get(String key, Profile profile) {
+    Entry entry = entries.get(key);
+    return entry != null && entry.getProfile().equals(profile) ? entry : null;
+  }
+
+  /**
+   * Adds an entry, evicting the least recently used entries to stay within bounds. Entries that are too large for the
+   * cache on their own are not added.
+   *
+   * @param key   The cache key
+   * @param entry The entry
+   */
+  public synchronized void put(String key, Entry entry) {
+    if (entry.getBids() > maxBids || maxEntries <= 0) {
+      return;
+    }
+    Entry old = entries.put(key, entry);
+    if (old != null) {
+      bids -= old.getBids();
+    }
+    bids += entry.getBids();
+    Iterator<Entry> eldest = entries.values().iterator();
+    while (entries.size() > maxEntries || bids > maxBids) {
+      bids -= eldest.next().getBids();
+      eldest.remove();
+    }
+  }
+
+  /**
+   * @return the number of cached profiles
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return the number of bids held by all cached stores
+   */
+  public synchronized long getBids() {
+    return bids;
+  }
+
+  /**
+   * Removes all entries.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    bids = 0;
+  }
+
+  /**
+   * Precomputed data of one profile.
+   */
+  public static class Entry {
+    private final Profile profile;
+    private final BidCodec codec;
+    private final LinearAdditiveEvaluator evaluator;
+    private final BidStore store;
+
+    /**
+     * @param profile   The profile
+     * @param codec     The codec of its domain
+     * @param evaluator The compiled evaluator, null if the profile is not linear additive
+     * @param store     The immutable store of every bid, null if the bid space is streamed
+     */
+    public Entry(Profile profile, BidCodec codec, LinearAdditiveEvaluator evaluator, BidStore store) {
+      this.profile = profile;
+      this.codec = codec;
+      this.evaluator = evaluator;
+      this.store = store;
+    }
+
+    public Profile getProfile() {
+      return profile;
+    }
+
+    public BidCodec getCodec() {
+      return codec;
+    }
+
+    public LinearAdditiveEvaluator getEvaluator() {
+      return evaluator;
+    }
+
+    public BidStore getStore() {
+      return store;
+    }
+
+    /**
+     * @return the number of bids held by the store
+     */
+    public long getBids() {
+      return store == null ? 0 : codec.size();
+    }
+  }
+}
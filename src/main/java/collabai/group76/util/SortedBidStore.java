@@ -0,0 +1,339 @@
+package collabai.group76.util;
+
+import geniusweb.issuevalue.Bid;
+import geniusweb.profile.utilityspace.UtilitySpace;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Immutable store of every bid of a domain, sorted on descending utility. Bids are kept as {@link BidCodec} indices and
+ * the utility of each bid is evaluated once when the store is built and kept as a primitive double, so utility range
+ * queries become a binary search instead of a scan over the whole bid space. Rank 0 always refers to the best bid.
+ * The store can be built on a {@link ForkJoinPool}, which splits both the scoring and the sort over its threads.
+ */
+public class SortedBidStore implements BidStore {
+
+  //Ranges smaller than this are scored or sorted by a single task.
+  private static final int SEQUENTIAL_THRESHOLD = 1 << 14;
+
+  private final BidCodec codec;
+  private final long[] bidIds;
+  private final double[] utilities;
+
+  private SortedBidStore(BidCodec codec, long[] bidIds, double[] utilities) {
+    this.codec = codec;
+    this.bidIds = bidIds;
+    this.utilities = utilities;
+  }
+
+  /**
+   * Builds the store by evaluating every bid of the domain exactly once.
+   *
+   * @param codec        The codec of the domain
+   * @param utilitySpace The utility space used to evaluate the bids
+   * @return the sorted store
+   * @throws IllegalArgumentException if the domain has too many bids to fit in an array
+   */
+  public static SortedBidStore build(BidCodec codec, UtilitySpace utilitySpace) {
+    return build(codec, utilitySpace, null);
+  }
+
+  /**
+   * Builds the store by evaluating every bid of the domain exactly once, on the threads of the given pool.
+   *
+   * @param codec        The codec of the domain
+   * @param utilitySpace The utility space used to evaluate the bids, must be safe to use from several threads
+   * @param pool         The pool to build on, null to build on the calling thread
+   * @return the sorted store
+   * @throws IllegalArgumentException if the domain has too many bids to fit in an array
+   */
+  public static SortedBidStore build(BidCodec codec, UtilitySpace utilitySpace, ForkJoinPool pool) {
+    return build(codec, pool, (from, to, bidIds, utilities) -> {
+      for (int i = from; i < to; i++) {
+        bidIds[i] = i;
+        utilities[i] = utilitySpace.getUtility(codec.decode(i)).doubleValue();
+      }
+    });
+  }
+
+  /**
+   * Builds the store by scoring all bids of the domain in one batch with a compiled evaluator.
+   *
+   * @param evaluator The evaluator of the profile
+   * @return the sorted store
+   * @throws IllegalArgumentException if the domain has too many bids to fit in an array
+   */
+  public static SortedBidStore build(LinearAdditiveEvaluator evaluator) {
+    return build(evaluator, null);
+  }
+
+  /**
+   * Builds the store by scoring ranges of the bid space with a compiled evaluator on the threads of the given pool.
+   *
+   * @param evaluator The evaluator of the profile
+   * @param pool      The pool to build on, null to build on the calling thread
+   * @return the sorted store
+   * @throws IllegalArgumentException if the domain has too many bids to fit in an array
+   */
+  public static SortedBidStore build(LinearAdditiveEvaluator evaluator, ForkJoinPool pool) {
+    return build(evaluator.getCodec(), pool, (from, to, bidIds, utilities) -> {
+      for (int i = from; i < to; i++) {
+        bidIds[i] = i;
+      }
+      evaluator.utilitiesOfRange(from, to - from, utilities, from);
+    });
+  }
+
+  /**
+   * Repairs a sorted store after the profile changed. Only the bids holding a value whose weighted utility changed are
+   * scored again. They are sorted among themselves and merged with the other bids, which are still in order, so the
+   * result is the store a full build with the updated profile would give.
+   *
+   * @param store    The store sorted with the previous profile
+   * @param size     The number of bids in the store
+   * @param previous The evaluator of the previous profile
+   * @param updated  The evaluator of the updated profile, of the same domain
+   * @return the store sorted with the updated profile
+   * @throws IllegalArgumentException if the profiles are of different domains
+   */
+  public static SortedBidStore rescore(BidStore store, int size, LinearAdditiveEvaluator previous,
+                                       LinearAdditiveEvaluator updated) {
+    BidCodec codec = updated.getCodec();
+    boolean[][] changed = previous.changedValues(updated);
+    int[] changedIssues = new int[changed.length];
+    int issues = 0;
+    for (int i = 0; i < changed.length; i++) {
+      if (changed[i] != null) {
+        changedIssues[issues++] = i;
+      }
+    }
+    changedIssues = Arrays.copyOf(changedIssues, issues);
+    long[] keptIds = new long[size];
+    double[] keptUtilities = new double[size];
+    long[] changedIds = new long[size];
+    int kept = 0;
+    int rescored = 0;
+    for (int rank = 0; rank < size; rank++) {
+      long bidId = store.getBidId(rank);
+      if (holdsChange(codec, changed, changedIssues, bidId)) {
+        changedIds[rescored++] = bidId;
+      } else {
+        keptIds[kept] = bidId;
+        keptUtilities[kept++] = store.getUtility(rank);
+      }
+    }
+    //Sorting on index first makes bids of equal utility end up in index order, like in a full build.
+    changedIds = Arrays.copyOf(changedIds, rescored);
+    Arrays.sort(changedIds);
+    double[] changedUtilities = new double[rescored];
+    updated.utilities(changedIds, changedUtilities);
+    sortDescending(changedUtilities, changedIds, new double[rescored], new long[rescored], 0, rescored);
+    long[] bidIds = new long[size];
+    double[] utilities = new double[size];
+    int left = 0;
+    int right = 0;
+    for (int i = 0; i < size; i++) {
+      if (right >= rescored || (left < kept && (keptUtilities[left] > changedUtilities[right]
+                                                 || (keptUtilities[left] == changedUtilities[right]
+                                                     && keptIds[left] < changedIds[right])))) {
+        bidIds[i] = keptIds[left];
+        utilities[i] = keptUtilities[left++];
+      } else {
+        bidIds[i] = changedIds[right];
+        utilities[i] = changedUtilities[right++];
+      }
+    }
+    return new SortedBidStore(codec, bidIds, utilities);
+  }
+
+  private static boolean holdsChange(BidCodec codec, boolean[][] changed, int[] changedIssues, long bidId) {
+    for (int i : changedIssues) {
+      if (changed[i][codec.digit(bidId, i)]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static SortedBidStore build(BidCodec codec, ForkJoinPool pool, RangeScorer scorer) {
+    int size = checkedSize(codec);
+    long[] bidIds = new long[size];
+    double[] utilities = new double[size];
+    double[] keyBuffer = new double[size];
+    long[] valueBuffer = new long[size];
+    if (pool == null || size < SEQUENTIAL_THRESHOLD) {
+      scorer.score(0, size, bidIds, utilities);
+      sortDescending(utilities, bidIds, keyBuffer, valueBuffer, 0, size);
+    } else {
+      pool.invoke(new ScoreTask(scorer, bidIds, utilities, 0, size));
+      pool.invoke(new SortTask(utilities, bidIds, keyBuffer, valueBuffer, 0, size));
+    }
+    return new SortedBidStore(codec, bidIds, utilities);
+  }
+
+  private static int checkedSize(BidCodec codec) {
+    if (codec.size() > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Domain of " + codec.size() + " bids is too large to sort in memory");
+    }
+    return (int) codec.size();
+  }
+
+  /**
+   * @return the number of bids in the store
+   */
+  public int size() {
+    return bidIds.length;
+  }
+
+  @Override
+  public long getBidId(int rank) {
+    return bidIds[rank];
+  }
+
+  @Override
+  public Bid getBid(int rank) {
+    return codec.decode(bidIds[rank]);
+  }
+
+  @Override
+  public double getUtility(int rank) {
+    return utilities[rank];
+  }
+
+  @Override
+  public int countAtLeast(double utility) {
+    int low = 0;
+    int high = utilities.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (utilities[mid] >= utility) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  @Override
+  public int floorRank(double utility) {
+    int low = 0;
+    int high = utilities.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (utilities[mid] > utility) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low < utilities.length ? low : -1;
+  }
+
+  /**
+   * Merge sorts the keys on descending order, moving the values along with their keys. The sort is stable so bids of
+   * equal utility keep their index order.
+   */
+  private static void sortDescending(double[] keys, long[] values, double[] keyBuffer, long[] valueBuffer, int from,
+                                     int to) {
+    if (to - from < 2) {
+      return;
+    }
+    int mid = (from + to) >>> 1;
+    sortDescending(keys, values, keyBuffer, valueBuffer, from, mid);
+    sortDescending(keys, values, keyBuffer, valueBuffer, mid, to);
+    merge(keys, values, keyBuffer, valueBuffer, from, mid, to);
+  }
+
+  /**
+   * Merges the sorted ranges [from, mid) and [mid, to), taking from the left range first on equal keys.
+   */
+  private static void merge(double[] keys, long[] values, double[] keyBuffer, long[] valueBuffer, int from, int mid,
+                            int to) {
+    if (keys[mid - 1] >= keys[mid]) {
+      return;
+    }
+    System.arraycopy(keys, from, keyBuffer, from, to - from);
+    System.arraycopy(values, from, valueBuffer, from, to - from);
+    int left = from;
+    int right = mid;
+    for (int i = from; i < to; i++) {
+      if (right >= to || (left < mid && keyBuffer[left] >= keyBuffer[right])) {
+        keys[i] = keyBuffer[left];
+        values[i] = valueBuffer[left++];
+      } else {
+        keys[i] = keyBuffer[right];
+        values[i] = valueBuffer[right++];
+      }
+    }
+  }
+
+  /**
+   * Scores the bids with index in [from, to), writing the index and utility of bid i at position i.
+   */
+  private interface RangeScorer {
+    void score(int from, int to, long[] bidIds, double[] utilities);
+  }
+
+  private static class ScoreTask extends RecursiveAction {
+    private final RangeScorer scorer;
+    private final long[] bidIds;
+    private final double[] utilities;
+    private final int from;
+    private final int to;
+
+    ScoreTask(RangeScorer scorer, long[] bidIds, double[] utilities, int from, int to) {
+      this.scorer = scorer;
+      this.bidIds = bidIds;
+      this.utilities = utilities;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= SEQUENTIAL_THRESHOLD) {
+        scorer.score(from, to, bidIds, utilities);
+        return;
+      }
+      int mid = (from + to) >>> 1;
+      invokeAll(new ScoreTask(scorer, bidIds, utilities, from, mid),
+            new ScoreTask(scorer, bidIds, utilities, mid, to));
+    }
+  }
+
+  /**
+   * Parallel version of {@link #sortDescending}: both halves are sorted as separate tasks before they are merged, so
+   * the result is the same stable order.
+   */
+  private static class SortTask extends RecursiveAction {
+    private final double[] keys;
+    private final long[] values;
+    private final double[] keyBuffer;
+    private final long[] valueBuffer;
+    private final int from;
+    private final int to;
+
+    SortTask(double[] keys, long[] values, double[] keyBuffer, long[] valueBuffer, int from, int to) {
+      this.keys = keys;
+      this.values = values;
+      this.keyBuffer = keyBuffer;
+      this.valueBuffer = valueBuffer;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= SEQUENTIAL_THRESHOLD) {
+        sortDescending(keys, values, keyBuffer, valueBuffer, from, to);
+        return;
+      }
+      int mid = (from + to) >>> 1;
+      invokeAll(new SortTask(keys, values, keyBuffer, valueBuffer, from, mid),
+            new SortTask(keys, values, keyBuffer, valueBuffer, mid, to));
+      merge(keys, values, keyBuffer, valueBuffer, from, mid, to);
+    }
+  }
+}
@@ -0,0 +1,194 @@
+package collabai.group76.util;
+
+import geniusweb.issuevalue.Bid;
+import geniusweb.profile.utilityspace.LinearAdditive;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Bid store for domains too large to hold in memory. Bids are generated lazily in descending utility order using the
+ * compiled issue weights of a {@link LinearAdditive} profile: every issue's values are ranked on their weighted utility and a
+ * best-first search over these per-issue rankings produces the next best bid on demand. Only the bids that have been
+ * asked for are kept, up to a fixed limit.
+ */
+public class StreamingBidStore implements BidStore {
+
+  //Number of bids generated between two looks at the clock, a power of two.
+  private static final int DEADLINE_CHECK = 64;
+
+  private final BidCodec codec;
+  //Value ordinals of every issue, best weighted utility first.
+  private final int[][] valueOrdinals;
+  //Weighted utility of every value, in the same order as valueOrdinals.
+  private final double[][] contributions;
+  private final int limit;
+  private final PriorityQueue<Candidate> frontier;
+  private long[] generatedIds;
+  private double[] generatedUtilities;
+  private int generated;
+
+  /**
+   * @param evaluator The evaluator of the profile to generate bids for
+   * @param limit     The maximum number of bids that will be generated
+   */
+  public StreamingBidStore(LinearAdditiveEvaluator evaluator, int limit) {
+    BidCodec codec = evaluator.getCodec();
+    int issues = codec.issueCount();
+    this.codec = codec;
+    this.valueOrdinals = new int[issues][];
+    this.contributions = new double[issues][];
+    for (int i = 0; i < issues; i++) {
+      double[] weighted = new double[codec.valueCount(i)];
+      Integer[] order = new Integer[weighted.length];
+      for (int v = 0; v < weighted.length; v++) {
+        weighted[v] = evaluator.contribution(i, v);
+        order[v] = v;
+      }
+      Arrays.sort(order, (a, b) -> Double.compare(weighted[b], weighted[a]));
+      valueOrdinals[i] = new int[weighted.length];
+      contributions[i] = new double[weighted.length];
+      for (int rank = 0; rank < weighted.length; rank++) {
+        valueOrdinals[i][rank] = order[rank];
+        contributions[i][rank] = weighted[order[rank]];
+      }
+    }
+    this.limit = limit;
+    this.frontier = new PriorityQueue<>((a, b) -> Double.compare(b.utility, a.utility));
+    this.generatedIds = new long[64];
+    this.generatedUtilities = new double[64];
+    int[] best = new int[issues];
+    if (codec.size() > 0) {
+      frontier.add(new Candidate(best, 0, utilityOf(best)));
+    }
+  }
+
+  @Override
+  public long getBidId(int rank) {
+    checkGenerated(rank);
+    return generatedIds[rank];
+  }
+
+  @Override
+  public Bid getBid(int rank) {
+    return codec.decode(getBidId(rank));
+  }
+
+  @Override
+  public double getUtility(int rank) {
+    checkGenerated(rank);
+    return generatedUtilities[rank];
+  }
+
+  /**
+   * {@inheritDoc} The count never exceeds the generation limit of this store.
+   */
+  @Override
+  public int countAtLeast(double utility) {
+    while (lastUtility() >= utility && generateNext()) {
+      //Keep generating until we pass the utility.
+    }
+    int count = generated;
+    while (count > 0 && generatedUtilities[count - 1] < utility) {
+      count--;
+    }
+    return count;
+  }
+
+  /**
+   * {@inheritDoc} Generation is stopped when the deadline passed, the bids generated so far are kept for the next call.
+   */
+  @Override
+  public int countAtLeast(double utility, Clock clock, long deadline) {
+    int checked = 0;
+    while (lastUtility() >= utility && ((++checked & (DEADLINE_CHECK - 1)) != 0 || clock.nanoTime() - deadline < 0)
+          && generateNext()) {
+      //Keep generating until we pass the utility or run out of time.
+    }
+    int count = generated;
+    while (count > 0 && generatedUtilities[count - 1] < utility) {
+      count--;
+    }
+    return count;
+  }
+
+  /**
+   * {@inheritDoc} That is the case once a bid of lower utility was generated, or no more bids can be generated.
+   */
+  @Override
+  public boolean isCounted(double utility) {
+    return lastUtility() < utility || generated >= limit || frontier.isEmpty();
+  }
+
+  @Override
+  public int floorRank(double utility) {
+    int rank = countAtLeast(Math.nextUp(utility));
+    return rank < generated ? rank : -1;
+  }
+
+  /**
+   * @return the number of bids generated so far
+   */
+  public int generated() {
+    return generated;
+  }
+
+  private void checkGenerated(int rank) {
+    if (rank < 0 || rank >= generated) {
+      throw new IndexOutOfBoundsException("Rank " + rank + " has not been generated");
+    }
+  }
+
+  private double lastUtility() {
+    return generated == 0 ? Double.POSITIVE_INFINITY : generatedUtilities[generated - 1];
+  }
+
+  /**
+   * Takes the best candidate off the frontier and pushes its successors. Every ranking has exactly one parent (its
+   * last non zero position decremented), so each bid is generated once and never before a better bid.
+   *
+   * @return false if the limit was reached or the bid space is exhausted
+   */
+  private boolean generateNext() {
+    if (generated >= limit || frontier.isEmpty()) {
+      return false;
+    }
+    Candidate candidate = frontier.poll();
+    long bidId = 0;
+    for (int i = 0; i < valueOrdinals.length; i++) {
+      bidId += valueOrdinals[i][candidate.ranks[i]] * codec.stride(i);
+      if (i >= candidate.lastChanged && candidate.ranks[i] + 1 < valueOrdinals[i].length) {
+        int[] next = candidate.ranks.clone();
+        next[i]++;
+        frontier.add(new Candidate(next, i, utilityOf(next)));
+      }
+    }
+    if (generated == generatedIds.length) {
+      generatedIds = Arrays.copyOf(generatedIds, generated * 2);
+      generatedUtilities = Arrays.copyOf(generatedUtilities, generated * 2);
+    }
+    generatedIds[generated] = bidId;
+    generatedUtilities[generated] = candidate.utility;
+    generated++;
+    return true;
+  }
+
+  private double utilityOf(int[] ranks) {
+    double utility = 0;
+    for (int i = 0; i < ranks.length; i++) {
+      utility += contributions[i][ranks[i]];
+    }
+    return utility;
+  }
+
+  private static class Candidate {
+    final int[] ranks;
+    final int lastChanged;
+    final double utility;
+
+    Candidate(int[] ranks, int lastChanged, double utility) {
+      this.ranks = ranks;
+      this.lastChanged = lastChanged;
+      this.utility = utility;
+    }
+  }
+}
@@ -0,0 +1,178 @@
+package collabai.group76.util;
+
+import geniusweb.progress.Progress;
+import geniusweb.progress.ProgressRounds;
+
+/**
+ * Time keeping of a negotiation session. The clock is read once at the start of every turn and all decisions of the
+ * turn use that reading. The cost of our own turns and the time the opponent takes to answer are tracked as
+ * exponential moving averages, which gives an estimate of the turns left under a time deadline and a deadline for the
+ * current turn that searches can check to stop early, so a turn never runs past the end of the session.
+ */
+public class TimeBudget {
+
+  //Weight of the newest sample in the moving averages.
+  private static final double SMOOTHING = 0.2;
+  //Part of its fair share of the remaining time a turn may use.
+  private static final double TURN_SHARE = 0.5;
+
+  private final long maxTurnNanos;
+  private final Clock clock;
+  private Progress progress;
+  private long turnStartMillis;
+  private long turnStartNanos;
+  private double time;
+  private long deadlineNanos;
+  private long lastTurnEndNanos = -1;
+  private double turnCostNanos = Double.NaN;
+  private double opponentLatencyNanos = Double.NaN;
+
+  /**
+   * @param progress     The progress of the session
+   * @param maxTurnNanos The most time a single turn may take
+   */
+  public TimeBudget(Progress progress, long maxTurnNanos) {
+    this(progress, maxTurnNanos, Clock.SYSTEM);
+  }
+
+  /**
+   * @param progress     The progress of the session
+   * @param maxTurnNanos The most time a single turn may take
+   * @param clock        The clock to read
+   */
+  public TimeBudget(Progress progress, long maxTurnNanos, Clock clock) {
+    this.progress = progress;
+    this.maxTurnNanos = maxTurnNanos;
+    this.clock = clock;
+    startTurn(clock.millis(), clock.nanoTime());
+  }
+
+  /**
+   * @param progress The progress after it advanced a round
+   */
+  public void setProgress(Progress progress) {
+    this.progress = progress;
+  }
+
+  /**
+   * Starts a turn now.
+   */
+  public void startTurn() {
+    startTurn(clock.millis(), clock.nanoTime());
+  }
+
+  /**
+   * Starts a turn at the given time, reading the progress and setting the deadline of the turn.
+   *
+   * @param nowMillis The wall clock time in milliseconds
+   * @param nowNanos  The {@link Clock#nanoTime()} at the same moment
+   */
+  public void startTurn(long nowMillis, long nowNanos) {
+    if (lastTurnEndNanos >= 0) {
+      opponentLatencyNanos = average(opponentLatencyNanos, nowNanos - lastTurnEndNanos);
+    }
+    this.turnStartMillis = nowMillis;
+    this.turnStartNanos = nowNanos;
+    this.time = progress.get(nowMillis);
+    double remainingNanos = getRemainingMillis() * 1e6;
+    double turns = getRemainingTurns();
+    double share = Double.isInfinite(turns) ? remainingNanos : remainingNanos / Math.max(1, turns);
+    this.deadlineNanos = nowNanos + (long) Math.max(0, Math.min(maxTurnNanos, share * TURN_SHARE));
+  }
+
+  /**
+   * Ends the turn now.
+   */
+  public void endTurn() {
+    endTurn(clock.nanoTime());
+  }
+
+  /**
+   * Ends the turn, adding its cost to the average turn cost.
+   *
+   * @param nowNanos The {@link Clock#nanoTime()} at the end of the turn
+   */
+  public void endTurn(long nowNanos) {
+    turnCostNanos = average(turnCostNanos, nowNanos - turnStartNanos);
+    lastTurnEndNanos = nowNanos;
+  }
+
+  /**
+   * @return the progress of the session at the start of the turn, in [0, 1]
+   */
+  public double getTime() {
+    return time;
+  }
+
+  /**
+   * @return the wall clock time at the start of the turn in milliseconds
+   */
+  public long getTurnStart() {
+    return turnStartMillis;
+  }
+
+  /**
+   * @return the milliseconds left in the session at the start of the turn
+   */
+  public long getRemainingMillis() {
+    return Math.max(0, progress.getTerminationTime().getTime() - turnStartMillis);
+  }
+
+  /**
+   * @return the {@link Clock#nanoTime()} by which the turn should be done
+   */
+  public long getDeadline() {
+    return deadlineNanos;
+  }
+
+  /**
+   * @return true if the turn is past its deadline and searches should return their best result so far
+   */
+  public boolean isExpired() {
+    return clock.nanoTime() - deadlineNanos > 0;
+  }
+
+  /**
+   * @return the average nanoseconds our turns take, NaN before the first turn ended
+   */
+  public double getTurnCost() {
+    return turnCostNanos;
+  }
+
+  /**
+   * @return the average nanoseconds between the end of our turn and the start of the next, NaN before it was measured
+   */
+  public double getOpponentLatency() {
+    return opponentLatencyNanos;
+  }
+
+  /**
+   * @return the number of turns we still get, estimated from the round trip time under a time deadline
+   */
+  public double getRemainingTurns() {
+    if (progress instanceof ProgressRounds) {
+      ProgressRounds rounds = (ProgressRounds) progress;
+      return rounds.getTotalRounds() - rounds.getCurrentRound();
+    }
+    double roundTrip = getRoundTrip();
+    return Double.isNaN(roundTrip) ? Double.POSITIVE_INFINITY : getRemainingMillis() * 1e6 / roundTrip;
+  }
+
+  /**
+   * @return true if the opponent will most likely not get to make another offer after this turn
+   */
+  public boolean isFinalTurn() {
+    return getRemainingTurns() < 2;
+  }
+
+  private double getRoundTrip() {
+    if (Double.isNaN(turnCostNanos) || Double.isNaN(opponentLatencyNanos)) {
+      return Double.NaN;
+    }
+    return Math.max(1, turnCostNanos + opponentLatencyNanos);
+  }
+
+  private static double average(double average, double sample) {
+    return Double.isNaN(average) ? sample : average + SMOOTHING * (sample - average);
+  }
+}
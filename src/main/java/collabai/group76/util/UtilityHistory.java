@@ -0,0 +1,221 @@
+package collabai.group76.util;
+
+import java.util.Arrays;
+import java.util.function.LongToDoubleFunction;
+
+/**
+ * History of the {@link BidCodec} indices, utilities and arrival times of the bids we received, ordered by round.
+ * Keeps a running maximum over all bids and a sliding window over the most recent bids, for which the average and
+ * maximum are available in O(1) amortized time. The window is given as a number of bids in round based sessions and
+ * as a start time in time based sessions. Its start can only move forward, which matches how the rounds we consider
+ * shrink as the session goes on.
+ */
+public class UtilityHistory {
+
+  //Index of the bid received in every round.
+  private long[] bidIds = new long[16];
+  //Time in milliseconds every bid was received.
+  private long[] times = new long[16];
+  //Utility of every bid received.
+  private double[] utilities = new double[16];
+  //Ring buffer holding the utilities from windowStart up to size.
+  private double[] buffer = new double[16];
+  //Ring buffer of round numbers in the window with decreasing utilities, the front is the window max.
+  private int[] maxDeque = new int[16];
+  private int dequeHead;
+  private int dequeSize;
+  private int size;
+  private int windowStart;
+  private double windowSum;
+  private double max = Double.NEGATIVE_INFINITY;
+
+  /**
+   * Adds the bid received this round.
+   *
+   * @param bidId   The index of the received bid, {@link BidCodec#NONE} if it has none
+   * @param utility The utility of the received bid
+   * @param time    The time the bid was received in milliseconds, must not be before earlier bids
+   */
+  public void add(long bidId, double utility, long time) {
+    if (size == bidIds.length) {
+      bidIds = Arrays.copyOf(bidIds, size * 2);
+      times = Arrays.copyOf(times, size * 2);
+      utilities = Arrays.copyOf(utilities, size * 2);
+    }
+    bidIds[size] = bidId;
+    times[size] = time;
+    utilities[size] = utility;
+    if (size - windowStart == buffer.length) {
+      grow();
+    }
+    push(size, utility);
+    max = Math.max(max, utility);
+    size++;
+  }
+
+  /**
+   * Adds the utility of a round to the end of the window.
+   */
+  private void push(int round, double utility) {
+    int mask = buffer.length - 1;
+    buffer[round & mask] = utility;
+    windowSum += utility;
+    while (dequeSize > 0 && buffer[maxDeque[(dequeHead + dequeSize - 1) & mask] & mask] <= utility) {
+      dequeSize--;
+    }
+    maxDeque[(dequeHead + dequeSize++) & mask] = round;
+  }
+
+  /**
+   * Scores every received bid again, for when our profile changed. The window keeps its start, its average and maximum
+   * and the overall maximum are computed from the new utilities. Bids without an index keep their utility.
+   *
+   * @param utility Gives the utility of a bid index
+   */
+  public void rescore(LongToDoubleFunction utility) {
+    max = Double.NEGATIVE_INFINITY;
+    for (int round = 0; round < size; round++) {
+      if (bidIds[round] != BidCodec.NONE) {
+        utilities[round] = utility.applyAsDouble(bidIds[round]);
+      }
+      max = Math.max(max, utilities[round]);
+    }
+    windowSum = 0;
+    dequeHead = 0;
+    dequeSize = 0;
+    for (int round = windowStart; round < size; round++) {
+      push(round, utilities[round]);
+    }
+  }
+
+  /**
+   * Shrinks the window to the given number of most recent bids. A window larger than the current one is ignored as
+   * the start of the window only moves forward.
+   *
+   * @param length The number of most recent bids to consider
+   */
+  public void slideWindow(int length) {
+    moveWindowStart(size - Math.max(length, 0));
+  }
+
+  /**
+   * Shrinks the window to the bids received at or after the given time. A time before the current window start is
+   * ignored as the start of the window only moves forward.
+   *
+   * @param time The earliest time in milliseconds to consider
+   */
+  public void slideWindowSince(long time) {
+    int start = windowStart;
+    while (start < size && times[start] < time) {
+      start++;
+    }
+    moveWindowStart(start);
+  }
+
+  private void moveWindowStart(int newStart) {
+    int start = Math.max(windowStart, newStart);
+    int mask = buffer.length - 1;
+    while (windowStart < start) {
+      windowSum -= buffer[windowStart & mask];
+      if (dequeSize > 0 && maxDeque[dequeHead] == windowStart) {
+        dequeHead = (dequeHead + 1) & mask;
+        dequeSize--;
+      }
+      windowStart++;
+    }
+  }
+
+  /**
+   * @return the number of bids received
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @param round The round the bid was received in, 0 being the first
+   * @return the index of the bid received in that round
+   */
+  public long getBidId(int round) {
+    if (round < 0 || round >= size) {
+      throw new IndexOutOfBoundsException("Round " + round + " out of range [0, " + size + ")");
+    }
+    return bidIds[round];
+  }
+
+  /**
+   * @param round The round the bid was received in, 0 being the first
+   * @return the utility of the bid received in that round
+   */
+  public double getUtility(int round) {
+    if (round < 0 || round >= size) {
+      throw new IndexOutOfBoundsException("Round " + round + " out of range [0, " + size + ")");
+    }
+    return utilities[round];
+  }
+
+  /**
+   * @param round The round the bid was received in, 0 being the first
+   * @return the time in milliseconds the bid of that round was received
+   */
+  public long getTime(int round) {
+    if (round < 0 || round >= size) {
+      throw new IndexOutOfBoundsException("Round " + round + " out of range [0, " + size + ")");
+    }
+    return times[round];
+  }
+
+  /**
+   * @return true if no bids have been received
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @return the number of bids in the window
+   */
+  public int windowSize() {
+    return size - windowStart;
+  }
+
+  /**
+   * @return the max utility of all bids received, negative infinity if there are none
+   */
+  public double max() {
+    return max;
+  }
+
+  /**
+   * @return the max utility of the bids in the window, negative infinity if the window is empty
+   */
+  public double windowMax() {
+    return dequeSize == 0 ? Double.NEGATIVE_INFINITY : buffer[maxDeque[dequeHead] & (buffer.length - 1)];
+  }
+
+  /**
+   * @return the average utility of the bids in the window, NaN if the window is empty
+   */
+  public double windowAverage() {
+    return windowSize() == 0 ? Double.NaN : windowSum / windowSize();
+  }
+
+  /**
+   * Doubles the capacity of both ring buffers, keeping the entries at the positions of their round number.
+   */
+  private void grow() {
+    int oldMask = buffer.length - 1;
+    double[] newBuffer = new double[buffer.length * 2];
+    int[] newDeque = new int[buffer.length * 2];
+    int newMask = newBuffer.length - 1;
+    for (int round = windowStart; round < size; round++) {
+      newBuffer[round & newMask] = buffer[round & oldMask];
+    }
+    for (int i = 0; i < dequeSize; i++) {
+      newDeque[i] = maxDeque[(dequeHead + i) & oldMask];
+    }
+    this.buffer = newBuffer;
+    this.maxDeque = newDeque;
+    this.dequeHead = 0;
+  }
+}